@@ -1,6 +1,68 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Main class containing all functionalities and a simulation of the workflow.
@@ -14,7 +76,7 @@ public class Task1 {
         ArchiveManager archiveManager = new ArchiveManager();
 
         // Step 1: Capture advertisement details
-        System.out.println("=== Step 1: Capture Advertisement Details ===");
+        printHeading("=== Step 1: Capture Advertisement Details ===");
         staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "This is a valid ad.", "Front Page", LocalDate.of(2025, 1, 15), "Large");
         staff.captureAdvertisementDetails("Advertiser B", "contact@b.com", "This ad is inappropriate.", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
         staff.captureAdvertisementDetails("Advertiser C", "contact@c.com", "Another valid ad.", "Middle Page", LocalDate.of(2025, 3, 5), "Small");
@@ -23,41 +85,51 @@ public class Task1 {
         staff.captureAdvertisementDetails("Advertiser F", "contact@f.com", "Old ad for archival.", "Middle Page", LocalDate.of(2023, 1, 15), "Small"); // Should be archived
 
         // Step 2: Review advertisement suitability
-        System.out.println("\n=== Step 2: Review Advertisement Suitability ===");
-        for (Advertisement ad : staff.advertisements) {
-            staff.reviewAdvertisementSuitability(ad);
-        }
+        printHeading("\n=== Step 2: Review Advertisement Suitability ===");
+        staff.reviewAll(staff.advertisements);
 
         // Step 3: Handle payment confirmation
-        System.out.println("\n=== Step 3: Confirm Payment ===");
+        printHeading("\n=== Step 3: Confirm Payment ===");
         paymentProcessor.confirmPayment(staff.advertisements.get(0)); // Confirm payment for first ad
         paymentProcessor.confirmPayment(staff.advertisements.get(2)); // Confirm payment for third ad
         paymentProcessor.confirmPayment(staff.advertisements.get(4)); // Confirm payment for fifth ad (rejected review)
 
         // Step 4: Approve advertisements
-        System.out.println("\n=== Step 4: Approve Advertisements ===");
+        printHeading("\n=== Step 4: Approve Advertisements ===");
         for (Advertisement ad : staff.advertisements) {
             staff.approveAdvertisement(ad);
         }
 
         // Step 5: Forward advertisements to processing center
-        System.out.println("\n=== Step 5: Forward Advertisements ===");
+        printHeading("\n=== Step 5: Forward Advertisements ===");
         for (Advertisement ad : staff.advertisements) {
             processingCenter.receiveAdvertisement(ad);
         }
 
         // Step 6: Archive unused advertisements
-        System.out.println("\n=== Step 6: Archive Unused Advertisements ===");
+        printHeading("\n=== Step 6: Archive Unused Advertisements ===");
         archiveManager.archiveUnusedAdvertisements(staff.advertisements);
-        System.out.println("Archived Advertisements:");
-        for (Advertisement archivedAd : archiveManager.getArchivedAdvertisements()) {
-            System.out.println(archivedAd.getDetails());
-        }
+        printHeading("Archived Advertisements:");
+        printDetails(archiveManager.getArchivedAdvertisements());
 
         // Step 7: View current advertisements
-        System.out.println("\n=== Step 7: View Current Advertisements ===");
-        for (Advertisement ad : staff.advertisements) {
-            System.out.println(ad.getDetails());
+        printHeading("\n=== Step 7: View Current Advertisements ===");
+        printDetails(staff.advertisements);
+        archiveManager.close();
+    }
+
+    // Prints a step heading after any workflow events still queued for output
+    private static void printHeading(String heading) {
+        WorkflowEvents.flush();
+        System.out.println(heading);
+    }
+
+    // Prints one details line per advertisement
+    private static void printDetails(Iterable<Advertisement> ads) {
+        try {
+            DetailsRenderer.render(ads, System.out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not print advertisement details.", e); // PrintStream does not throw
         }
     }
 }
@@ -67,7 +139,19 @@ public class Task1 {
  * Represents an advertisement with its details and methods to manage its lifecycle.yes
  */
 class Advertisement {
-    private static List<Advertisement> advertisementList = new ArrayList<>(); // Static list to hold all advertisements
+    private static final int STATUS_MASK = 0xFF;
+    private static final int PAID = 1 << 8;
+    private static final int PROCESSED = 1 << 9;
+    private static final AtomicLong SERIALS = new AtomicLong();
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Advertisement.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     private String advertID;
     private String advertiserName;
@@ -75,10 +159,12 @@ class Advertisement {
     private String content;
     private String placementPreferences;
     private LocalDate appearanceDate;
-    private String reviewStatus;
-    private boolean isPaid;
     private String size;
-    private boolean isProcessed; // Tracks if the advertisement has been processed
+    private volatile int state; // Status ordinal in the low byte plus the PAID and PROCESSED flags; changed only by CAS
+    private AdvertisementRepository repository; // Repository indexing this advertisement, if any
+    private volatile AdvertisementRegistry registry; // Registry this advertisement was recorded in, if any
+    private volatile byte[] encodedDetails; // UTF-8 details line cached by DetailsRenderer, cleared when the status changes
+    private final long serial = SERIALS.getAndIncrement(); // Creation order, which orders the repository's index sets
 
     // Constructor to initialize an advertisement
     public Advertisement(String advertID, String advertiserName, String contactInfo, String content, String placementPreferences, LocalDate appearanceDate, String size) {
@@ -88,10 +174,8 @@ class Advertisement {
         this.content = content;
         this.placementPreferences = placementPreferences;
         this.appearanceDate = appearanceDate;
-        this.reviewStatus = "Pending";
-        this.isPaid = false;
         this.size = size;
-        this.isProcessed = false;
+        this.state = AdStatus.PENDING.ordinal();
     }
 
     // Getters and setters for advertisement fields
@@ -99,210 +183,4156 @@ class Advertisement {
         return advertID;
     }
 
+    public String getAdvertiserName() {
+        return advertiserName;
+    }
+
+    public String getContactInfo() {
+        return contactInfo;
+    }
+
+    public String getPlacementPreferences() {
+        return placementPreferences;
+    }
+
+    public String getSize() {
+        return size;
+    }
+
     public String getContent() {
         return content;
     }
 
     public String getReviewStatus() {
-        return reviewStatus;
+        return getStatus().getLabel();
     }
 
+    // Updates the review status from its label, e.g. "Approved"
     public void setReviewStatus(String reviewStatus) {
-        this.reviewStatus = reviewStatus;
+        AdStatus newStatus = AdStatus.fromLabel(reviewStatus);
+        if (newStatus == null) {
+            throw new IllegalArgumentException("Unknown review status: " + reviewStatus);
+        }
+        setStatus(newStatus);
+    }
+
+    public AdStatus getStatus() {
+        return AdStatus.fromOrdinal(state & STATUS_MASK);
+    }
+
+    // Moves the advertisement to a new lifecycle status and keeps the owning repository's status index in sync
+    public void setStatus(AdStatus newStatus) {
+        while (true) {
+            int current = state;
+            AdStatus previousStatus = AdStatus.fromOrdinal(current & STATUS_MASK);
+            if (!previousStatus.canTransitionTo(newStatus)) {
+                throw new IllegalStateException("Advertisement " + advertID + " cannot move from " + previousStatus + " to " + newStatus + ".");
+            }
+            if (previousStatus == newStatus) {
+                return;
+            }
+            if (STATE.compareAndSet(this, current, (current & ~STATUS_MASK) | newStatus.ordinal())) {
+                statusChanged(previousStatus, newStatus);
+                return;
+            }
+        }
+    }
+
+    // Moves to the new status only if the status is still the expected one; flags may change meanwhile
+    public boolean compareAndSetStatus(AdStatus expected, AdStatus newStatus) {
+        return transition(STATUS_MASK, expected.ordinal(), newStatus, 0);
+    }
+
+    // Approval found no payment: moves from Approved to Not Paid, unless payment was confirmed in the meantime
+    public boolean markNotPaid() {
+        return transition(STATUS_MASK | PAID, AdStatus.APPROVED.ordinal(), AdStatus.NOT_PAID, 0);
+    }
+
+    // Forwarding: moves from Approved to Processed and sets the processed flag, only while approved and paid
+    public boolean markProcessed() {
+        return transition(STATUS_MASK | PAID, AdStatus.APPROVED.ordinal() | PAID, AdStatus.PROCESSED, PROCESSED);
+    }
+
+    // Archives the advertisement unless it has been processed
+    public boolean archiveUnlessProcessed() {
+        return transition(PROCESSED, 0, AdStatus.ARCHIVED, 0);
     }
 
     public boolean isPaid() {
-        return isPaid;
+        return (state & PAID) != 0;
     }
 
     public void setPaid(boolean isPaid) {
-        this.isPaid = isPaid;
+        setFlag(PAID, isPaid);
+    }
+
+    // Sets the paid flag; returns false if it was already set, so concurrent confirmations count once
+    public boolean markPaid() {
+        return setFlag(PAID, true);
     }
 
     public boolean isProcessed() {
-        return isProcessed;
+        return (state & PROCESSED) != 0;
     }
 
     public void setProcessed(boolean isProcessed) {
-        this.isProcessed = isProcessed;
+        setFlag(PROCESSED, isProcessed);
+    }
+
+    // Compare-and-set loop for a status change that requires (state & mask) == expected. The change is
+    // skipped, returning false, if the requirement fails or the lifecycle does not allow the new status.
+    private boolean transition(int mask, int expected, AdStatus newStatus, int flags) {
+        while (true) {
+            int current = state;
+            if ((current & mask) != expected) {
+                return false;
+            }
+            AdStatus previousStatus = AdStatus.fromOrdinal(current & STATUS_MASK);
+            if (!previousStatus.canTransitionTo(newStatus)) {
+                return false;
+            }
+            int next = (current & ~STATUS_MASK) | newStatus.ordinal() | flags;
+            if (next == current) {
+                return true;
+            }
+            if (STATE.compareAndSet(this, current, next)) {
+                if (previousStatus != newStatus) {
+                    statusChanged(previousStatus, newStatus);
+                }
+                return true;
+            }
+        }
+    }
+
+    // Sets or clears a flag; returns false if it already had that value
+    private boolean setFlag(int flag, boolean value) {
+        while (true) {
+            int current = state;
+            int next = value ? current | flag : current & ~flag;
+            if (next == current) {
+                return false;
+            }
+            if (STATE.compareAndSet(this, current, next)) {
+                if (flag == PAID && repository != null) {
+                    repository.paidChanged(this, value);
+                }
+                return true;
+            }
+        }
+    }
+
+    // Runs after a successful status change: clears the cached details and updates the repository and registry
+    private void statusChanged(AdStatus previousStatus, AdStatus newStatus) {
+        encodedDetails = null;
+        if (repository != null) {
+            repository.statusChanged(this, previousStatus, newStatus);
+        }
+        AdvertisementRegistry recordedIn = registry;
+        if (recordedIn != null && newStatus == AdStatus.ARCHIVED) {
+            recordedIn.archived(this);
+        }
     }
 
     // Returns the details of the advertisement as a formatted string
     public String getDetails() {
-        return "ID: " + advertID + ", Advertiser: " + advertiserName + ", Content: " + content + ", Size: " + size + ", Status: " + reviewStatus;
+        StringBuilder details = new StringBuilder();
+        appendDetails(details, getStatus());
+        return details.toString();
+    }
+
+    // Appends the details as they read with the given status, without building an intermediate string
+    void appendDetails(StringBuilder details, AdStatus status) {
+        details.append("ID: ").append(advertID).append(", Advertiser: ").append(advertiserName)
+               .append(", Content: ").append(content).append(", Size: ").append(size).append(", Status: ").append(status.getLabel());
+    }
+
+    // Writes the details to any character sink, piece by piece
+    public void writeDetails(Appendable out) throws IOException {
+        out.append("ID: ").append(advertID).append(", Advertiser: ").append(advertiserName)
+           .append(", Content: ").append(content).append(", Size: ").append(size).append(", Status: ").append(getStatus().getLabel());
+    }
+
+    // Returns the details encoded as UTF-8, encoding them only on the first call after a status change.
+    // The returned array is shared and must not be modified.
+    byte[] getEncodedDetails() {
+        byte[] encoded = encodedDetails;
+        if (encoded == null) {
+            AdStatus encodedStatus = getStatus();
+            StringBuilder details = new StringBuilder();
+            appendDetails(details, encodedStatus);
+            encoded = details.toString().getBytes(StandardCharsets.UTF_8);
+            encodedDetails = encoded;
+            if (getStatus() != encodedStatus) {
+                encodedDetails = null; // Changed while encoding; do not keep a stale line
+            }
+        }
+        return encoded;
     }
     
-    // Records the advertisement into the static list
+    // Records the advertisement in the global registry
     public void recordDetails() {
-        advertisementList.add(this);
-        System.out.println("Advertisement added to the list: " + getDetails());
+        recordDetails(AdvertisementRegistry.global());
+    }
+
+    // Records the advertisement in the given registry
+    public void recordDetails(AdvertisementRegistry registry) {
+        registry.register(this);
+        WorkflowEvents.publish(WorkflowEventType.RECORDED, this, getStatus());
     }
 
-    // Retrieves the static list of all advertisements
+    // Retrieves the advertisements recorded in the global registry, in no particular order
     public static List<Advertisement> getAdvertisementList() {
-        return advertisementList;
+        return AdvertisementRegistry.global().snapshot();
     }
 
 	public LocalDate getAppearanceDate() {
 		return appearanceDate;
 	}
+
+    // Restores lifecycle state read back from storage, bypassing transition checks
+    void restoreState(AdStatus status, boolean isPaid, boolean isProcessed) {
+        this.state = status.ordinal() | (isPaid ? PAID : 0) | (isProcessed ? PROCESSED : 0);
+        this.encodedDetails = null;
+    }
+
+    long getSerial() {
+        return serial;
+    }
+
+    AdvertisementRepository getRepository() {
+        return repository;
+    }
+
+    void setRepository(AdvertisementRepository repository) {
+        this.repository = repository;
+    }
+
+    AdvertisementRegistry getRegistry() {
+        return registry;
+    }
+
+    void setRegistry(AdvertisementRegistry registry) {
+        this.registry = registry;
+    }
 }
 
 /**
- * Represents a marketing staff member and manages advertisement operations.
+ * Lifecycle statuses of an advertisement, with the transitions allowed between them precomputed as bit masks.
+ * A review decision may be revised until the advertisement is processed or archived; archiving is final.
  */
-class MarketingStaff {
-    private String staffID;
-    private String name;
-    public List<Advertisement> advertisements;
+enum AdStatus {
+    PENDING("Pending"),
+    APPROVED("Approved"),
+    REJECTED("Rejected"),
+    NOT_PAID("Not Paid"),
+    PROCESSED("Processed"),
+    ARCHIVED("Archived");
 
-    // Constructor to initialize a marketing staff member
-    public MarketingStaff(String staffID, String name) {
-        this.staffID = staffID;
-        this.name = name;
-        this.advertisements = new ArrayList<>();
+    private static final AdStatus[] VALUES = values();
+    private static final int[] ALLOWED_TRANSITIONS = new int[VALUES.length];
+
+    static {
+        allow(PENDING, APPROVED, REJECTED, ARCHIVED);
+        allow(APPROVED, REJECTED, NOT_PAID, PROCESSED, ARCHIVED);
+        allow(REJECTED, APPROVED, ARCHIVED);
+        allow(NOT_PAID, APPROVED, REJECTED, ARCHIVED);
+        allow(PROCESSED, ARCHIVED);
     }
 
-    public void captureAdvertisementDetails(String advertiserName, String contactInfo, String content, String placementPreferences, LocalDate appearanceDate, String size) {
-        // Validate inputs
-        if (advertiserName == null || advertiserName.isEmpty()) {
-            throw new IllegalArgumentException("Advertiser name cannot be null or empty.");
+    private final String label;
+
+    AdStatus(String label) {
+        this.label = label;
+    }
+
+    private static void allow(AdStatus from, AdStatus... targets) {
+        for (AdStatus target : targets) {
+            ALLOWED_TRANSITIONS[from.ordinal()] |= 1 << target.ordinal();
         }
-        if (contactInfo == null || contactInfo.isEmpty()) {
-            throw new IllegalArgumentException("Contact information cannot be null or empty.");
+    }
+
+    // Label shown to users, e.g. "Not Paid"
+    public String getLabel() {
+        return label;
+    }
+
+    // Staying in the same status is always allowed
+    public boolean canTransitionTo(AdStatus next) {
+        return this == next || (ALLOWED_TRANSITIONS[ordinal()] & (1 << next.ordinal())) != 0;
+    }
+
+    static AdStatus fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    // Looks up a status by its label, or returns null if there is none
+    public static AdStatus fromLabel(String label) {
+        if (label == null) {
+            return null;
         }
-        if (content == null || content.isEmpty()) {
-            throw new IllegalArgumentException("Content cannot be null or empty.");
+        for (AdStatus status : values()) {
+            if (status.label.equals(label)) {
+                return status;
+            }
         }
-        if (placementPreferences == null || placementPreferences.isEmpty()) {
-            throw new IllegalArgumentException("Placement preferences cannot be null or empty.");
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
+
+/**
+ * Stores advertisements in capture order and indexes them by ID, review status, advertiser and appearance month.
+ * The status index is updated by Advertisement.setStatus, so lookups never scan the full list. Status and
+ * advertiser sets are skip lists in creation order, so queries can iterate them while they change.
+ */
+class AdvertisementRepository extends AbstractList<Advertisement> {
+    private static final Comparator<Advertisement> BY_SERIAL = Comparator.comparingLong(Advertisement::getSerial);
+
+    private final List<Advertisement> advertisements = new ArrayList<>(); // Advertisements in capture order
+    private final Map<String, Advertisement> advertisementsByID = new HashMap<>();
+    private final Map<AdStatus, Set<Advertisement>> advertisementsByStatus = new EnumMap<>(AdStatus.class);
+    private final Map<String, Set<Advertisement>> advertisementsByAdvertiser = new HashMap<>();
+    private final NavigableMap<YearMonth, List<Advertisement>> advertisementsByMonth = new TreeMap<>(); // Appended in capture order
+    private int monthRemovals; // Counts removals from the month buckets, which shift positions within a bucket
+    private int highestIDNumber; // Highest number of any "A<number>" ID ever added, including removed advertisements
+    private final ReportingViews views = new ReportingViews();
+
+    @Override
+    public Advertisement get(int index) {
+        return advertisements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return advertisements.size();
+    }
+
+    // Inserts an advertisement and adds it to every index
+    @Override
+    public void add(int index, Advertisement ad) {
+        if (ad == null) {
+            throw new NullPointerException("Advertisement cannot be null.");
         }
-        if (appearanceDate == null) {
-            throw new IllegalArgumentException("Appearance date cannot be null or in the past.");
+        advertisements.add(index, ad);
+        index(ad);
+        modCount++;
+    }
+
+    // Replaces an advertisement and moves the index entries to the new one
+    @Override
+    public Advertisement set(int index, Advertisement ad) {
+        if (ad == null) {
+            throw new NullPointerException("Advertisement cannot be null.");
         }
-        if (size == null || size.isEmpty() || size.length() > 1000) { // Edge case: limit size length
-            throw new IllegalArgumentException("Size cannot be null, empty, or excessively large.");
+        Advertisement previous = advertisements.set(index, ad);
+        unindex(previous);
+        index(ad);
+        return previous;
+    }
+
+    // Removes an advertisement and drops it from every index
+    @Override
+    public Advertisement remove(int index) {
+        Advertisement removed = advertisements.remove(index);
+        unindex(removed);
+        modCount++;
+        return removed;
+    }
+
+    // Removes every matching advertisement in one pass over the list and the month buckets, rather than
+    // shifting the list once per removal
+    @Override
+    public boolean removeIf(Predicate<? super Advertisement> filter) {
+        Set<Advertisement> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        advertisements.removeIf(ad -> filter.test(ad) && removed.add(ad));
+        if (removed.isEmpty()) {
+            return false;
         }
+        for (Advertisement ad : removed) {
+            unindexExceptMonth(ad);
+        }
+        advertisementsByMonth.values().removeIf(bucket -> bucket.removeIf(removed::contains) && bucket.isEmpty());
+        monthRemovals += removed.size();
+        modCount++;
+        return true;
+    }
 
-        // Generate a unique advertisement ID
-        String advertID = generateAdvertID();
+    // Looks up an advertisement by its ID in constant time
+    public Advertisement findByID(String advertID) {
+        return advertisementsByID.get(advertID);
+    }
 
-        // Create and add the advertisement
-        Advertisement ad = new Advertisement(advertID, advertiserName, contactInfo, content, placementPreferences, appearanceDate, size);
-        advertisements.add(ad);
+    // Returns the advertisements currently in the given status
+    public List<Advertisement> findByStatus(AdStatus status) {
+        synchronized (advertisementsByStatus) {
+            return snapshot(advertisementsByStatus.get(status));
+        }
+    }
 
-        // Log details
-        System.out.println("Advertisement details captured: " + ad.getDetails());
+    // Returns the advertisements submitted by the given advertiser
+    public List<Advertisement> findByAdvertiser(String advertiserName) {
+        return snapshot(advertisementsByAdvertiser.get(advertiserName));
     }
 
+    // Weakly consistent iterator over the advertisements in the given status: it never throws
+    // ConcurrentModificationException, and may or may not reflect changes made after it was created
+    Iterator<Advertisement> iterateByStatus(AdStatus status) {
+        Set<Advertisement> ads;
+        synchronized (advertisementsByStatus) {
+            ads = advertisementsByStatus.get(status);
+        }
+        return ads == null ? Collections.emptyIterator() : ads.iterator();
+    }
 
-    // Generates a unique advertisement ID
-    private String generateAdvertID() {
-        int idNumber = advertisements.size() + 1;
-        return String.format("A%03d", idNumber);
+    // Weakly consistent iterator over the advertisements submitted by the given advertiser
+    Iterator<Advertisement> iterateByAdvertiser(String advertiserName) {
+        Set<Advertisement> ads = advertisementsByAdvertiser.get(advertiserName);
+        return ads == null ? Collections.emptyIterator() : ads.iterator();
     }
 
-    // Reviews the suitability of an advertisement
-    public void reviewAdvertisementSuitability(Advertisement ad) {
-        ReviewProcess reviewProcess = new ReviewProcess();
-        reviewProcess.assessSuitability(ad);
+    // Number for the next generated ID. It only grows, so IDs of archived or removed advertisements are never reissued.
+    int nextIDNumber() {
+        return highestIDNumber + 1;
     }
 
-    // Approves an advertisement if it meets all criteria
-    public void approveAdvertisement(Advertisement ad) {
-        if (ad.getReviewStatus().equals("Approved")) {
-            if (ad.isPaid()) {
-//                ad.approveForForwarding();
-                System.out.println("Advertisement approved for processing: " + ad.getAdvertID() + " - " +  ad.getReviewStatus());
-            } else {
-                ad.setReviewStatus("Not Paid");
-                System.out.println("Advertisement cannot be approved: " + ad.getAdvertID() + " - " + ad.getReviewStatus());
+    // Aggregate counts kept up to date with every change, for reports that must not scan
+    public ReportingViews getViews() {
+        return views;
+    }
+
+    // Starts a query over this repository; see AdvertisementQuery
+    public AdvertisementQuery query() {
+        return new AdvertisementQuery(this);
+    }
+
+    // Number of advertisements submitted by the given advertiser
+    public int countByAdvertiser(String advertiserName) {
+        Set<Advertisement> ads = advertisementsByAdvertiser.get(advertiserName);
+        return ads == null ? 0 : ads.size();
+    }
+
+    // Number of advertisements currently in the given status
+    public int countByStatus(AdStatus status) {
+        synchronized (advertisementsByStatus) {
+            Set<Advertisement> ads = advertisementsByStatus.get(status);
+            return ads == null ? 0 : ads.size();
+        }
+    }
+
+    // Month buckets keyed by appearance month, oldest first; ArchiveManager reads them without copying
+    NavigableMap<YearMonth, List<Advertisement>> getMonthBuckets() {
+        return advertisementsByMonth;
+    }
+
+    int getMonthRemovals() {
+        return monthRemovals;
+    }
+
+    // Called by Advertisement after a status change to move it between status buckets. Commands for different
+    // advertisements may change statuses concurrently, so the status index has its own lock. Status changes are
+    // compare-and-set, so two changes to one advertisement can report here out of order; the advertisement is
+    // therefore filed under the status it has now, rather than the one reported.
+    void statusChanged(Advertisement ad, AdStatus previousStatus, AdStatus newStatus) {
+        synchronized (advertisementsByStatus) {
+            removeFrom(advertisementsByStatus, previousStatus, ad);
+            removeFrom(advertisementsByStatus, newStatus, ad);
+            addTo(advertisementsByStatus, ad.getStatus(), ad);
+        }
+        views.statusChanged(previousStatus, newStatus);
+    }
+
+    // Called by Advertisement after its paid flag changes
+    void paidChanged(Advertisement ad, boolean isPaid) {
+        views.paidChanged(isPaid);
+    }
+
+    private void index(Advertisement ad) {
+        advertisementsByID.put(ad.getAdvertID(), ad);
+        noteIDNumber(ad.getAdvertID());
+        synchronized (advertisementsByStatus) {
+            addTo(advertisementsByStatus, ad.getStatus(), ad);
+        }
+        addTo(advertisementsByAdvertiser, ad.getAdvertiserName(), ad);
+        if (ad.getAppearanceDate() != null) {
+            advertisementsByMonth.computeIfAbsent(YearMonth.from(ad.getAppearanceDate()), k -> new ArrayList<>()).add(ad);
+        }
+        views.added(ad);
+        ad.setRepository(this);
+    }
+
+    // Raises highestIDNumber to the number of a generated-style ID such as A042; other IDs are ignored
+    private void noteIDNumber(String advertID) {
+        if (advertID == null || advertID.length() < 2 || advertID.length() > 10 || advertID.charAt(0) != 'A') {
+            return;
+        }
+        int number = 0;
+        for (int i = 1; i < advertID.length(); i++) {
+            char c = advertID.charAt(i);
+            if (c < '0' || c > '9') {
+                return;
             }
-        } else {
-            System.out.println("Advertisement cannot be approved: " + ad.getAdvertID() + " - " + ad.getReviewStatus());
+            number = number * 10 + (c - '0');
         }
+        highestIDNumber = Math.max(highestIDNumber, number);
     }
 
-    // Retrieves advertisements by their status
-    public List<Advertisement> getAdvertisementsByStatus(String status) {
-        List<Advertisement> filteredAds = new ArrayList<>();
-        for (Advertisement ad : advertisements) {
-            if (ad.getReviewStatus().equals(status)) {
-                filteredAds.add(ad);
+    private void unindex(Advertisement ad) {
+        unindexExceptMonth(ad);
+        if (ad.getAppearanceDate() != null) {
+            YearMonth month = YearMonth.from(ad.getAppearanceDate());
+            List<Advertisement> bucket = advertisementsByMonth.get(month);
+            if (bucket != null && bucket.remove(ad)) {
+                monthRemovals++;
+                if (bucket.isEmpty()) {
+                    advertisementsByMonth.remove(month);
+                }
             }
         }
-        return filteredAds;
+    }
+
+    private void unindexExceptMonth(Advertisement ad) {
+        views.removed(ad);
+        advertisementsByID.remove(ad.getAdvertID(), ad);
+        synchronized (advertisementsByStatus) {
+            removeFrom(advertisementsByStatus, ad.getStatus(), ad);
+        }
+        removeFrom(advertisementsByAdvertiser, ad.getAdvertiserName(), ad);
+        if (ad.getRepository() == this) {
+            ad.setRepository(null);
+        }
+    }
+
+    private static <K> void addTo(Map<K, Set<Advertisement>> index, K key, Advertisement ad) {
+        index.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>(BY_SERIAL)).add(ad);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Advertisement>> index, K key, Advertisement ad) {
+        Set<Advertisement> ads = index.get(key);
+        if (ads != null && ads.remove(ad) && ads.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static List<Advertisement> snapshot(Set<Advertisement> ads) {
+        return ads == null ? Collections.emptyList() : new ArrayList<>(ads);
     }
 }
 
 /**
- * Handles the archiving of unused advertisements.
+ * Aggregate counts over an AdvertisementRepository, kept up to date as advertisements are added, removed,
+ * change status or are paid, so reports never scan the catalogue. Every update is a constant number of LongAdder
+ * increments, and reads only sum counters, so dashboards can read while workers write without either blocking.
+ * Counts read during concurrent updates may be momentarily inconsistent with one another.
  */
-class ArchiveManager {
-    private List<Advertisement> archivedAdvertisements = new ArrayList<>(); // List to store archived advertisements
+class ReportingViews {
+    private final Map<AdStatus, LongAdder> byStatus = new EnumMap<>(AdStatus.class); // Filled once, then only read
+    private final ConcurrentHashMap<String, LongAdder> byAdvertiser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> bySize = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> byPlacement = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<YearMonth, LongAdder> byMonth = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+    private final LongAdder paid = new LongAdder();
 
-    // Archives advertisements unused for six months
-    public void archiveUnusedAdvertisements(List<Advertisement> ads) {
-        LocalDate sixMonthsAgo = LocalDate.now().minusMonths(6);
-        for (Advertisement ad : ads) {
-            if (!ad.isProcessed() && ad.getAppearanceDate().isBefore(sixMonthsAgo) && !archivedAdvertisements.contains(ad)) {
-                archivedAdvertisements.add(ad);
-                System.out.println("Archiving advertisement: " + ad.getAdvertID());
-            }
+    ReportingViews() {
+        for (AdStatus status : AdStatus.values()) {
+            byStatus.put(status, new LongAdder());
         }
     }
 
+    public long getTotalCount() {
+        return total.sum();
+    }
 
+    public long getPaidCount() {
+        return paid.sum();
+    }
 
-    // Retrieves the list of archived advertisements
-    public List<Advertisement> getArchivedAdvertisements() {
-        return archivedAdvertisements;
+    public long countByStatus(AdStatus status) {
+        return byStatus.get(status).sum();
     }
-}
 
-/**
- * Handles payment confirmation for advertisements.
- */
-class PaymentProcessor {
-    // Confirms payment for an advertisement
-    public void confirmPayment(Advertisement ad) {
-        ad.setPaid(true);
-        System.out.println("Payment confirmed for advertisement: " + ad.getAdvertID());
+    public long countByAdvertiser(String advertiserName) {
+        return sum(byAdvertiser, advertiserName);
     }
 
-    // Checks the payment status of an advertisement
-    public boolean checkPaymentStatus(Advertisement ad) {
-        return ad.isPaid();
+    public long countBySize(String size) {
+        return sum(bySize, size);
     }
-}
 
-/**
- * Handles advertisement suitability checks and approval.
- */
-class ReviewProcess {
-    // Assesses the suitability of an advertisement
-    public void assessSuitability(Advertisement ad) {
-        if (ad.getContent().contains("inappropriate")) {
-            ad.setReviewStatus("Rejected");
-            System.out.println("Advertisement rejected for inappropriate content: "  + ad.getAdvertID());
-        } else {
-            ad.setReviewStatus("Approved");
-            System.out.println("Advertisement approved for forwarding: "  + ad.getAdvertID());
+    public long countByPlacement(String placement) {
+        return sum(byPlacement, placement);
+    }
+
+    public long countByMonth(YearMonth month) {
+        return sum(byMonth, month);
+    }
+
+    public Map<AdStatus, Long> getStatusCounts() {
+        Map<AdStatus, Long> counts = new EnumMap<>(AdStatus.class);
+        for (Map.Entry<AdStatus, LongAdder> entry : byStatus.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    // Nonzero counts per advertiser, sorted by name
+    public Map<String, Long> getAdvertiserCounts() {
+        return snapshot(byAdvertiser);
+    }
+
+    public Map<String, Long> getSizeCounts() {
+        return snapshot(bySize);
+    }
+
+    public Map<String, Long> getPlacementCounts() {
+        return snapshot(byPlacement);
+    }
+
+    public Map<YearMonth, Long> getMonthCounts() {
+        return snapshot(byMonth);
+    }
+
+    // Called by AdvertisementRepository when an advertisement is indexed or unindexed
+    void added(Advertisement ad) {
+        update(ad, 1);
+    }
+
+    void removed(Advertisement ad) {
+        update(ad, -1);
+    }
+
+    // Called by AdvertisementRepository after a status change; the decrement and increment commute, so
+    // changes that report out of order still leave the right counts
+    void statusChanged(AdStatus previousStatus, AdStatus newStatus) {
+        byStatus.get(previousStatus).decrement();
+        byStatus.get(newStatus).increment();
+    }
+
+    void paidChanged(boolean isPaid) {
+        paid.add(isPaid ? 1 : -1);
+    }
+
+    private void update(Advertisement ad, int delta) {
+        total.add(delta);
+        byStatus.get(ad.getStatus()).add(delta);
+        if (ad.isPaid()) {
+            paid.add(delta);
+        }
+        add(byAdvertiser, ad.getAdvertiserName(), delta);
+        add(bySize, ad.getSize(), delta);
+        add(byPlacement, ad.getPlacementPreferences(), delta);
+        if (ad.getAppearanceDate() != null) {
+            add(byMonth, YearMonth.from(ad.getAppearanceDate()), delta);
+        }
+    }
+
+    private static <K> void add(ConcurrentHashMap<K, LongAdder> view, K key, int delta) {
+        if (key != null) {
+            view.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+        }
+    }
+
+    private static <K> long sum(ConcurrentHashMap<K, LongAdder> view, K key) {
+        LongAdder count = key == null ? null : view.get(key);
+        return count == null ? 0 : count.sum();
+    }
+
+    private static <K> Map<K, Long> snapshot(ConcurrentHashMap<K, LongAdder> view) {
+        Map<K, Long> counts = new TreeMap<>();
+        for (Map.Entry<K, LongAdder> entry : view.entrySet()) {
+            long count = entry.getValue().sum();
+            if (count != 0) {
+                counts.put(entry.getKey(), count);
+            }
         }
+        return counts;
     }
 }
 
 /**
- * Handles the processing of advertisements.
+ * Query over an AdvertisementRepository that combines criteria with AND. Before evaluation, a small planner
+ * estimates how many advertisements each indexed criterion (status, advertiser, appearance-date range) would
+ * produce and reads candidates from the most selective index, or from the whole repository if no criterion
+ * is indexed. All other criteria are checked lazily as results are consumed. Results arrive as a stream or a
+ * paginated cursor, in the order of the index that was chosen.
+ * Results are weakly consistent, like the iterators of the concurrent collections. Nothing is copied up front,
+ * and reading never throws ConcurrentModificationException. Each advertisement that stays in the repository
+ * while the results are read is returned at most once, and exactly once if it matches throughout. Ones captured
+ * or removed meanwhile may or may not be returned. As elsewhere in the repository, captures and removals must
+ * come from one thread at a time; only status changes may run concurrently with a query.
  */
-class ProcessingCenter {
-    // Processes an advertisement for publication
-    public void receiveAdvertisement(Advertisement ad) {
-        if (ad.getReviewStatus().equals("Approved") && ad.isPaid()) {
-            ad.setProcessed(true);
-            System.out.println("Processing advertisement for publication: " + ad.getAdvertID());
-        } else {
-            System.out.println("Cannot process advertisement: " + ad.getAdvertID());
+class AdvertisementQuery {
+    private final AdvertisementRepository repository;
+    private AdStatus status;
+    private String advertiserName;
+    private LocalDate from; // Inclusive appearance-date range
+    private LocalDate to;
+    private String placement;
+    private Boolean paid;
+    private Boolean processed;
+    private final List<Predicate<Advertisement>> predicates = new ArrayList<>();
+
+    AdvertisementQuery(AdvertisementRepository repository) {
+        this.repository = repository;
+    }
+
+    public AdvertisementQuery withStatus(AdStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public AdvertisementQuery byAdvertiser(String advertiserName) {
+        this.advertiserName = advertiserName;
+        return this;
+    }
+
+    // Advertisements appearing from one date to another, both inclusive
+    public AdvertisementQuery appearingBetween(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("Appearance date range must have a start on or before its end.");
         }
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    public AdvertisementQuery withPlacement(String placement) {
+        this.placement = placement;
+        return this;
+    }
+
+    public AdvertisementQuery paid(boolean paid) {
+        this.paid = paid;
+        return this;
+    }
+
+    public AdvertisementQuery processed(boolean processed) {
+        this.processed = processed;
+        return this;
+    }
+
+    // Adds any other condition; custom conditions are never used to pick an index
+    public AdvertisementQuery where(Predicate<Advertisement> predicate) {
+        predicates.add(predicate);
+        return this;
+    }
+
+    public Stream<Advertisement> stream() {
+        return candidates(plan()).filter(this::matches);
+    }
+
+    public AdvertisementCursor cursor(int pageSize) {
+        return new AdvertisementCursor(stream().iterator(), pageSize);
+    }
+
+    public long count() {
+        return stream().count();
+    }
+
+    // Describes the source the planner would read and its estimated candidate count
+    public String explain() {
+        Plan plan = plan();
+        return plan.source + " (" + plan.estimate + " candidates)";
+    }
+
+    private boolean matches(Advertisement ad) {
+        if (status != null && ad.getStatus() != status) {
+            return false;
+        }
+        if (advertiserName != null && !advertiserName.equals(ad.getAdvertiserName())) {
+            return false;
+        }
+        if (from != null && (ad.getAppearanceDate() == null || ad.getAppearanceDate().isBefore(from) || ad.getAppearanceDate().isAfter(to))) {
+            return false;
+        }
+        if (placement != null && !placement.equals(ad.getPlacementPreferences())) {
+            return false;
+        }
+        if (paid != null && ad.isPaid() != paid) {
+            return false;
+        }
+        if (processed != null && ad.isProcessed() != processed) {
+            return false;
+        }
+        for (Predicate<Advertisement> predicate : predicates) {
+            if (!predicate.test(ad)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Picks the candidate source with the smallest estimate; the estimates are index sizes read from the
+    // reporting views and month buckets, so no scan is needed
+    private Plan plan() {
+        Plan best = new Plan(Source.FULL_SCAN, repository.size());
+        if (status != null) {
+            best = best.orCheaper(Source.STATUS_INDEX, repository.getViews().countByStatus(status));
+        }
+        if (advertiserName != null) {
+            best = best.orCheaper(Source.ADVERTISER_INDEX, repository.getViews().countByAdvertiser(advertiserName));
+        }
+        if (from != null) {
+            long estimate = 0;
+            for (List<Advertisement> bucket : months().values()) {
+                estimate += bucket.size();
+            }
+            best = best.orCheaper(Source.MONTH_INDEX, estimate);
+        }
+        return best;
+    }
+
+    private Stream<Advertisement> candidates(Plan plan) {
+        Iterator<Advertisement> candidates;
+        switch (plan.source) {
+            case STATUS_INDEX:
+                candidates = repository.iterateByStatus(status);
+                break;
+            case ADVERTISER_INDEX:
+                candidates = repository.iterateByAdvertiser(advertiserName);
+                break;
+            case MONTH_INDEX:
+                candidates = new MonthWalker(repository.getMonthBuckets(), YearMonth.from(from), YearMonth.from(to));
+                break;
+            default:
+                candidates = new ListWalker(repository);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(candidates, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private NavigableMap<YearMonth, List<Advertisement>> months() {
+        return repository.getMonthBuckets().subMap(YearMonth.from(from), true, YearMonth.from(to), true);
+    }
+
+    /**
+     * Walks a list by position rather than with its fail-fast iterator. If advertisements before the walker's
+     * position are removed, it moves back to just after the last advertisement it returned. The list must be in
+     * creation order, as the repository's list and month buckets are when advertisements are added as they are
+     * created.
+     */
+    private static final class ListWalker implements Iterator<Advertisement> {
+        private final List<Advertisement> list;
+        private int position; // Index of the next advertisement, unless the list has shifted
+        private Advertisement last; // Last advertisement returned, or null before the first
+
+        ListWalker(List<Advertisement> list) {
+            this.list = list;
+        }
+
+        @Override
+        public boolean hasNext() {
+            relocate();
+            return position < list.size();
+        }
+
+        @Override
+        public Advertisement next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = list.get(position++);
+            return last;
+        }
+
+        private void relocate() {
+            if (last == null || (position <= list.size() && list.get(position - 1) == last)) {
+                return; // Nothing before the position was removed
+            }
+            int index = Math.min(position, list.size());
+            while (index > 0 && list.get(index - 1) != last && list.get(index - 1).getSerial() > last.getSerial()) {
+                index--;
+            }
+            position = index;
+        }
+    }
+
+    /**
+     * Walks the month buckets of a range in order, looking up each month afresh instead of holding a map iterator,
+     * so buckets created or dropped meanwhile do not disturb it.
+     */
+    private static final class MonthWalker implements Iterator<Advertisement> {
+        private final NavigableMap<YearMonth, List<Advertisement>> buckets;
+        private final YearMonth lastMonth;
+        private YearMonth month; // Month being walked, or the first month of the range before the walk starts
+        private ListWalker walker;
+
+        MonthWalker(NavigableMap<YearMonth, List<Advertisement>> buckets, YearMonth firstMonth, YearMonth lastMonth) {
+            this.buckets = buckets;
+            this.month = firstMonth;
+            this.lastMonth = lastMonth;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (walker == null || !walker.hasNext()) {
+                YearMonth next = walker == null ? buckets.ceilingKey(month) : buckets.higherKey(month);
+                if (next == null || next.isAfter(lastMonth)) {
+                    return false;
+                }
+                month = next;
+                walker = new ListWalker(buckets.get(month));
+            }
+            return true;
+        }
+
+        @Override
+        public Advertisement next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return walker.next();
+        }
+    }
+
+    private enum Source {
+        FULL_SCAN, STATUS_INDEX, ADVERTISER_INDEX, MONTH_INDEX
+    }
+
+    private static final class Plan {
+        private final Source source;
+        private final long estimate;
+
+        Plan(Source source, long estimate) {
+            this.source = source;
+            this.estimate = estimate;
+        }
+
+        Plan orCheaper(Source other, long otherEstimate) {
+            return otherEstimate < estimate ? new Plan(other, otherEstimate) : this;
+        }
+    }
+}
+
+/**
+ * Pages through query results without materializing them all.
+ */
+class AdvertisementCursor {
+    private final Iterator<Advertisement> results;
+    private final int pageSize;
+
+    AdvertisementCursor(Iterator<Advertisement> results, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1.");
+        }
+        this.results = results;
+        this.pageSize = pageSize;
+    }
+
+    public boolean hasNext() {
+        return results.hasNext();
+    }
+
+    // Returns up to pageSize further results
+    public List<Advertisement> nextPage() {
+        if (!results.hasNext()) {
+            throw new NoSuchElementException("No more results.");
+        }
+        List<Advertisement> page = new ArrayList<>(pageSize);
+        while (page.size() < pageSize && results.hasNext()) {
+            page.add(results.next());
+        }
+        return page;
+    }
+}
+
+/**
+ * Registry of recorded advertisements, keyed by ID and split into shards by ID hash. Each shard is a
+ * ConcurrentHashMap, so registering an advertisement is a CAS into an empty bin in the common case and never
+ * takes a registry-wide lock. Once an advertisement is archived, the registry keeps it strongly, holds it through
+ * a weak reference so it can be collected when nothing else uses it, or evicts it, depending on the retention.
+ * The registry may also be capped; a full registry first drops archived and collected entries, then refuses
+ * new registrations. Advertisement.recordDetails() uses the global registry; tests and tenants can create their own.
+ */
+class AdvertisementRegistry {
+    public enum ArchivedRetention {
+        STRONG, WEAK, EVICT
+    }
+
+    static final int SHARDS = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1));
+    private static final AdvertisementRegistry GLOBAL = new AdvertisementRegistry();
+
+    private final ConcurrentHashMap<String, Object>[] shards; // Values are Advertisements or ArchivedEntries
+    private final ReferenceQueue<Advertisement> collected = new ReferenceQueue<>();
+    private final ArchivedRetention archivedRetention;
+    private final long capacity;
+
+    public AdvertisementRegistry() {
+        this(Long.MAX_VALUE, ArchivedRetention.WEAK);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public AdvertisementRegistry(long capacity, ArchivedRetention archivedRetention) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Registry capacity must be at least 1.");
+        }
+        if (archivedRetention == null) {
+            throw new IllegalArgumentException("Archived retention cannot be null.");
+        }
+        this.capacity = capacity;
+        this.archivedRetention = archivedRetention;
+        this.shards = new ConcurrentHashMap[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    // Registry shared by every advertisement recorded without an explicit registry
+    public static AdvertisementRegistry global() {
+        return GLOBAL;
+    }
+
+    // Adds or replaces the advertisement under its ID. The size check is approximate under concurrent
+    // registration, so a capped registry may briefly hold a few more entries than its capacity.
+    public void register(Advertisement ad) {
+        expungeCollected();
+        if (capacity != Long.MAX_VALUE && size() >= capacity) {
+            sweep();
+            if (size() >= capacity) {
+                throw new IllegalStateException("Advertisement registry is full (" + capacity + " advertisements).");
+            }
+        }
+        shardFor(ad.getAdvertID()).put(ad.getAdvertID(), ad);
+        ad.setRegistry(this);
+        if (ad.getStatus() == AdStatus.ARCHIVED) {
+            archived(ad);
+        }
+    }
+
+    // Returns the advertisement registered under the ID, or null if there is none or it has been collected
+    public Advertisement find(String advertID) {
+        Object value = shardFor(advertID).get(advertID);
+        return value == null ? null : resolve(value);
+    }
+
+    public boolean contains(String advertID) {
+        return find(advertID) != null;
+    }
+
+    // Removes the advertisement if it is still the one registered under its ID
+    public boolean evict(Advertisement ad) {
+        ConcurrentHashMap<String, Object> shard = shardFor(ad.getAdvertID());
+        Object value = shard.get(ad.getAdvertID());
+        boolean removed = value != null && resolve(value) == ad && shard.remove(ad.getAdvertID(), value);
+        if (removed && ad.getRegistry() == this) {
+            ad.setRegistry(null);
+        }
+        return removed;
+    }
+
+    // Number of entries, including archived ones whose weak reference has not been expunged yet
+    public long size() {
+        long size = 0;
+        for (ConcurrentHashMap<String, Object> shard : shards) {
+            size += shard.mappingCount();
+        }
+        return size;
+    }
+
+    // Live advertisements in no particular order
+    public List<Advertisement> snapshot() {
+        List<Advertisement> ads = new ArrayList<>();
+        for (ConcurrentHashMap<String, Object> shard : shards) {
+            for (Object value : shard.values()) {
+                Advertisement ad = resolve(value);
+                if (ad != null) {
+                    ads.add(ad);
+                }
+            }
+        }
+        return ads;
+    }
+
+    // Drops collected entries and applies the archived retention to every archived advertisement still held strongly
+    public void sweep() {
+        expungeCollected();
+        if (archivedRetention == ArchivedRetention.STRONG) {
+            return;
+        }
+        for (ConcurrentHashMap<String, Object> shard : shards) {
+            for (Object value : shard.values()) {
+                if (value instanceof Advertisement && ((Advertisement) value).getStatus() == AdStatus.ARCHIVED) {
+                    archived((Advertisement) value);
+                }
+            }
+        }
+    }
+
+    // Called by Advertisement.setStatus when a registered advertisement is archived
+    void archived(Advertisement ad) {
+        ConcurrentHashMap<String, Object> shard = shardFor(ad.getAdvertID());
+        if (archivedRetention == ArchivedRetention.WEAK) {
+            shard.replace(ad.getAdvertID(), ad, new ArchivedEntry(ad, collected));
+        } else if (archivedRetention == ArchivedRetention.EVICT && shard.remove(ad.getAdvertID(), ad)) {
+            ad.setRegistry(null);
+        }
+    }
+
+    // Removes the entries of archived advertisements that have been garbage collected
+    private void expungeCollected() {
+        Reference<? extends Advertisement> reference;
+        while ((reference = collected.poll()) != null) {
+            ArchivedEntry entry = (ArchivedEntry) reference;
+            shardFor(entry.advertID).remove(entry.advertID, entry);
+        }
+    }
+
+    private ConcurrentHashMap<String, Object> shardFor(String advertID) {
+        int hash = advertID.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (SHARDS - 1)];
+    }
+
+    private static Advertisement resolve(Object value) {
+        return value instanceof ArchivedEntry ? ((ArchivedEntry) value).get() : (Advertisement) value;
+    }
+
+    /**
+     * Weakly held archived advertisement; remembers its ID so the entry can be removed once it is collected.
+     */
+    private static final class ArchivedEntry extends WeakReference<Advertisement> {
+        private final String advertID;
+
+        ArchivedEntry(Advertisement ad, ReferenceQueue<Advertisement> queue) {
+            super(ad, queue);
+            this.advertID = ad.getAdvertID();
+        }
+    }
+}
+
+/**
+ * Represents a marketing staff member and manages advertisement operations.
+ */
+class MarketingStaff {
+    private static final int PARALLEL_REVIEW_THRESHOLD = 2048; // Smaller batches are reviewed on the caller's thread
+
+    private String staffID;
+    private String name;
+    public final AdvertisementRepository advertisements;
+    private final ReviewProcess reviewProcess = new ReviewProcess(); // Stateless, shared by every review
+
+    // Constructor to initialize a marketing staff member
+    public MarketingStaff(String staffID, String name) {
+        this.staffID = staffID;
+        this.name = name;
+        this.advertisements = new AdvertisementRepository();
+    }
+
+    public String getStaffID() {
+        return staffID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void captureAdvertisementDetails(String advertiserName, String contactInfo, String content, String placementPreferences, LocalDate appearanceDate, String size) {
+        long start = System.nanoTime();
+        // Validate inputs
+        CaptureError error = validateDetails(advertiserName, contactInfo, content, placementPreferences, appearanceDate, size);
+        if (error != null) {
+            throw new IllegalArgumentException(error.getMessage());
+        }
+        capture(advertiserName, contactInfo, content, placementPreferences, appearanceDate, size);
+        WorkflowMetrics.record(WorkflowStage.CAPTURE, start);
+    }
+
+    // Captures a batch of submissions in order. Each one is validated before anything is allocated for it, and
+    // invalid ones are recorded in the result by row index and error code instead of throwing, so only valid
+    // submissions use up an advertisement ID.
+    public CaptureResult captureAll(List<AdvertisementSubmission> submissions) {
+        long start = System.nanoTime();
+        CaptureResult result = new CaptureResult();
+        for (int row = 0; row < submissions.size(); row++) {
+            AdvertisementSubmission submission = submissions.get(row);
+            CaptureError error = validateDetails(submission.getAdvertiserName(), submission.getContactInfo(), submission.getContent(),
+                                                 submission.getPlacementPreferences(), submission.getAppearanceDate(), submission.getSize());
+            if (error != null) {
+                result.recordFailure(row, error);
+                continue;
+            }
+            capture(submission.getAdvertiserName(), submission.getContactInfo(), submission.getContent(),
+                    submission.getPlacementPreferences(), submission.getAppearanceDate(), submission.getSize());
+            result.recordCapture();
+        }
+        WorkflowMetrics.record(WorkflowStage.CAPTURE, result.getCapturedCount(), start);
+        return result;
+    }
+
+    // Returns the first problem with the submitted details, or null if they are valid
+    static CaptureError validateDetails(String advertiserName, String contactInfo, String content, String placementPreferences, LocalDate appearanceDate, String size) {
+        if (advertiserName == null || advertiserName.isEmpty()) {
+            return CaptureError.MISSING_ADVERTISER_NAME;
+        }
+        if (contactInfo == null || contactInfo.isEmpty()) {
+            return CaptureError.MISSING_CONTACT_INFO;
+        }
+        if (content == null || content.isEmpty()) {
+            return CaptureError.MISSING_CONTENT;
+        }
+        if (placementPreferences == null || placementPreferences.isEmpty()) {
+            return CaptureError.MISSING_PLACEMENT_PREFERENCES;
+        }
+        if (appearanceDate == null) {
+            return CaptureError.MISSING_APPEARANCE_DATE;
+        }
+        if (size == null || size.isEmpty() || size.length() > 1000) { // Edge case: limit size length
+            return CaptureError.INVALID_SIZE;
+        }
+        return null;
+    }
+
+    // Creates and adds an advertisement from validated details
+    private void capture(String advertiserName, String contactInfo, String content, String placementPreferences, LocalDate appearanceDate, String size) {
+        // Generate a unique advertisement ID
+        String advertID = generateAdvertID();
+
+        // Create and add the advertisement
+        Advertisement ad = new Advertisement(advertID, advertiserName, contactInfo, content, placementPreferences, appearanceDate, size);
+        advertisements.add(ad);
+
+        // Log details
+        WorkflowEvents.publish(WorkflowEventType.CAPTURED, ad, ad.getStatus());
+    }
+
+
+    // Generates a unique advertisement ID
+    private String generateAdvertID() {
+        int idNumber = advertisements.nextIDNumber();
+        return String.format("A%03d", idNumber);
+    }
+
+    // Reviews the suitability of an advertisement
+    public void reviewAdvertisementSuitability(Advertisement ad) {
+        reviewProcess.assessSuitability(ad);
+    }
+
+    // Reviews a batch of advertisements. Large batches have their content checked in parallel on the
+    // ForkJoin common pool; the resulting statuses are then recorded in batch order on the caller's thread.
+    public ReviewSummary reviewAll(Collection<Advertisement> ads) {
+        long start = System.nanoTime();
+        Advertisement[] batch = ads.toArray(new Advertisement[0]);
+        boolean[] suitable = new boolean[batch.length];
+        if (batch.length < PARALLEL_REVIEW_THRESHOLD) {
+            for (int i = 0; i < batch.length; i++) {
+                suitable[i] = reviewProcess.isSuitable(batch[i]);
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new SuitabilityCheckTask(reviewProcess, batch, suitable, 0, batch.length));
+        }
+
+        int approved = 0;
+        for (int i = 0; i < batch.length; i++) {
+            reviewProcess.recordDecision(batch[i], suitable[i]);
+            if (suitable[i]) {
+                approved++;
+            }
+        }
+        WorkflowMetrics.record(WorkflowStage.REVIEW, batch.length, start);
+        return new ReviewSummary(approved, batch.length - approved);
+    }
+
+    // Approves an advertisement if it meets all criteria
+    // Approval may race with payment on another thread, so an unpaid advertisement is only marked Not Paid if it
+    // is still approved and unpaid at that moment; otherwise the decision is made again.
+    public void approveAdvertisement(Advertisement ad) {
+        long start = System.nanoTime();
+        while (true) {
+            AdStatus status = ad.getStatus();
+            if (status != AdStatus.APPROVED) {
+                WorkflowEvents.publish(WorkflowEventType.APPROVAL_REFUSED, ad, status);
+                break;
+            }
+            if (ad.isPaid()) {
+//                ad.approveForForwarding();
+                WorkflowEvents.publish(WorkflowEventType.APPROVED, ad, status);
+                break;
+            }
+            if (ad.markNotPaid()) {
+                WorkflowEvents.publish(WorkflowEventType.APPROVAL_REFUSED, ad, AdStatus.NOT_PAID);
+                break;
+            }
+        }
+        WorkflowMetrics.record(WorkflowStage.APPROVAL, start);
+    }
+
+    // Retrieves advertisements by their status
+    public List<Advertisement> getAdvertisementsByStatus(String status) {
+        AdStatus adStatus = AdStatus.fromLabel(status);
+        return adStatus == null ? Collections.emptyList() : advertisements.findByStatus(adStatus);
+    }
+
+    public List<Advertisement> getAdvertisementsByStatus(AdStatus status) {
+        return advertisements.findByStatus(status);
+    }
+
+    // Number of advertisements in each status, read from the reporting views without locking
+    public Map<AdStatus, Integer> getStatusCounts() {
+        Map<AdStatus, Integer> counts = new EnumMap<>(AdStatus.class);
+        for (AdStatus status : AdStatus.values()) {
+            counts.put(status, (int) advertisements.getViews().countByStatus(status));
+        }
+        return counts;
+    }
+
+    // Retrieves advertisements submitted by an advertiser
+    public List<Advertisement> getAdvertisementsByAdvertiser(String advertiserName) {
+        return advertisements.findByAdvertiser(advertiserName);
+    }
+
+    // Starts a multi-criteria query over this staff member's advertisements
+    public AdvertisementQuery queryAdvertisements() {
+        return advertisements.query();
+    }
+
+    // Retrieves an advertisement by its ID, or null if none exists
+    public Advertisement findAdvertisement(String advertID) {
+        return advertisements.findByID(advertID);
+    }
+}
+
+/**
+ * Handles the archiving of unused advertisements.
+ * When given an AdvertisementRepository, sweeps walk its appearance-month buckets and remember how far each
+ * fully expired month has been checked, so later sweeps only look at newly expired or newly added advertisements.
+ * Archived advertisements are written to an ArchiveStore rather than kept on the heap.
+ */
+class ArchiveManager implements Closeable {
+    private ArchiveStore archiveStore; // Archived advertisements, stored off-heap; opened on first use if temporary
+    private final boolean ownsStore; // The store is a temporary one that close() deletes
+
+    private AdvertisementRepository sweptRepository; // Repository the sweep progress below belongs to
+    private int sweptMonthRemovals;
+    private final Map<YearMonth, Integer> checkedPerMonth = new HashMap<>(); // Advertisements already checked in each fully expired month
+
+    // Constructor archiving to a temporary store, which is created by the first archive and deleted by close()
+    public ArchiveManager() {
+        this.ownsStore = true;
+    }
+
+    // Constructor archiving to a store opened by the caller, who may share it and is responsible for closing it
+    public ArchiveManager(ArchiveStore archiveStore) {
+        if (archiveStore == null) {
+            throw new IllegalArgumentException("Archive store cannot be null.");
+        }
+        this.archiveStore = archiveStore;
+        this.ownsStore = false;
+    }
+
+    // Archives advertisements unused for six months and drops them from the list; from then on they only live in
+    // the archive store
+    public void archiveUnusedAdvertisements(List<Advertisement> ads) {
+        archiveUnusedAdvertisements(ads, LocalDate.now());
+    }
+
+    // Archives advertisements unused for the six months before the given date, as above
+    public void archiveUnusedAdvertisements(List<Advertisement> ads, LocalDate today) {
+        long start = System.nanoTime();
+        ArchiveStore store = getArchiveStore();
+        LocalDate sixMonthsAgo = today.minusMonths(6);
+        Set<Advertisement> archived = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (ads instanceof AdvertisementRepository) {
+            sweep((AdvertisementRepository) ads, sixMonthsAgo, archived);
+        } else {
+            for (Advertisement ad : ads) {
+                archiveIfUnused(ad, sixMonthsAgo, archived);
+            }
+        }
+        store.force();
+        if (!archived.isEmpty()) {
+            ads.removeIf(archived::contains);
+            if (ads == sweptRepository) {
+                resumeSweep(sweptRepository);
+            }
+        }
+        WorkflowMetrics.record(WorkflowStage.ARCHIVING, archived.size(), start);
+    }
+
+    // Incremental sweep over the repository's month buckets
+    private void sweep(AdvertisementRepository repository, LocalDate sixMonthsAgo, Set<Advertisement> archived) {
+        if (repository != sweptRepository || repository.getMonthRemovals() != sweptMonthRemovals) {
+            // Different repository, or positions within buckets have shifted: start over
+            sweptRepository = repository;
+            sweptMonthRemovals = repository.getMonthRemovals();
+            checkedPerMonth.clear();
+        }
+
+        // Months entirely before the cutoff: only advertisements not checked by an earlier sweep
+        YearMonth cutoffMonth = YearMonth.from(sixMonthsAgo);
+        for (Map.Entry<YearMonth, List<Advertisement>> bucket : repository.getMonthBuckets().headMap(cutoffMonth, false).entrySet()) {
+            List<Advertisement> ads = bucket.getValue();
+            int checked = checkedPerMonth.getOrDefault(bucket.getKey(), 0);
+            if (checked < ads.size()) {
+                for (int i = checked; i < ads.size(); i++) {
+                    archiveIfUnused(ads.get(i), sixMonthsAgo, archived);
+                }
+                checkedPerMonth.put(bucket.getKey(), ads.size());
+            }
+        }
+
+        // The cutoff month is only partly expired, so it is checked in full every time
+        List<Advertisement> boundary = repository.getMonthBuckets().get(cutoffMonth);
+        if (boundary != null) {
+            for (Advertisement ad : boundary) {
+                archiveIfUnused(ad, sixMonthsAgo, archived);
+            }
+        }
+    }
+
+    // After archived advertisements are dropped, what is left in a fully expired month was checked and kept, so
+    // the sweep can carry on from the end of each bucket instead of starting over
+    private void resumeSweep(AdvertisementRepository repository) {
+        NavigableMap<YearMonth, List<Advertisement>> buckets = repository.getMonthBuckets();
+        checkedPerMonth.keySet().retainAll(buckets.keySet());
+        checkedPerMonth.replaceAll((month, checked) -> buckets.get(month).size());
+        sweptMonthRemovals = repository.getMonthRemovals();
+    }
+
+    private void archiveIfUnused(Advertisement ad, LocalDate sixMonthsAgo, Set<Advertisement> archived) {
+        if (!ad.isProcessed() && ad.getAppearanceDate().isBefore(sixMonthsAgo) && !archiveStore.contains(ad.getAdvertID())
+                && ad.archiveUnlessProcessed()) {
+            archiveStore.append(ad);
+            archived.add(ad);
+            WorkflowEvents.publish(WorkflowEventType.ARCHIVED, ad);
+        }
+    }
+
+    // Retrieves a read-only view of the archived advertisements; each one is read back from the store on access,
+    // and iterating streams through the segments in archive order
+    public List<Advertisement> getArchivedAdvertisements() {
+        return getArchiveStore().view();
+    }
+
+    // Reads back one archived advertisement by its ID, or returns null if it was never archived
+    public Advertisement findArchivedAdvertisement(String advertID) {
+        return getArchiveStore().find(advertID);
+    }
+
+    public synchronized ArchiveStore getArchiveStore() {
+        if (archiveStore == null) {
+            archiveStore = ArchiveStore.openTemporary();
+        }
+        return archiveStore;
+    }
+
+    // Closes and deletes the temporary store; a store passed in by the caller is left open
+    @Override
+    public synchronized void close() {
+        if (ownsStore && archiveStore != null) {
+            archiveStore.close();
+        }
+    }
+}
+
+/**
+ * Append-only storage for archived advertisements in fixed-size, memory-mapped segment files.
+ * Each record is a length prefix followed by the advertisement's fields; the prefix is written last, so a
+ * record cut short by a crash reads as the end of the segment. Only an ID-to-position index stays on the heap.
+ * Reopening a directory scans its segments to rebuild that index.
+ */
+class ArchiveStore implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean temporary; // Segment files are deleted when the JVM exits
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Map<String, Long> positionsByID = new HashMap<>(); // Segment index in the high 32 bits, offset in the low
+    private long[] positions = new long[1024]; // Record positions in archive order
+    private int count;
+    private int writeSegment = -1; // Segment new records go to, or -1 before the first record
+    private int writeOffset; // Next free byte in the write segment
+    private int unforcedFrom; // First segment written to since the last force
+    private boolean closed;
+
+    private ArchiveStore(Path directory, int segmentSize, boolean temporary) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.temporary = temporary;
+    }
+
+    // Opens (or creates) a store in the given directory and rebuilds its index from the existing segments
+    public static ArchiveStore open(Path directory, int segmentSize) throws IOException {
+        return open(directory, segmentSize, false);
+    }
+
+    private static ArchiveStore open(Path directory, int segmentSize, boolean temporary) throws IOException {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("Segment size is too small.");
+        }
+        Files.createDirectories(directory);
+        ArchiveStore store = new ArchiveStore(directory, segmentSize, temporary);
+        for (int segment = 0; Files.exists(store.segmentPath(segment)); segment++) {
+            store.mapSegment(segment);
+            store.writeOffset = store.scanSegment(segment);
+            store.writeSegment = segment;
+        }
+        store.unforcedFrom = Math.max(store.writeSegment, 0);
+        return store;
+    }
+
+    public static ArchiveStore open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    // Opens a store in a new temporary directory, deleted by close() or otherwise when the JVM exits
+    public static ArchiveStore openTemporary() {
+        try {
+            Path directory = Files.createTempDirectory("advertisement-archive");
+            directory.toFile().deleteOnExit();
+            return open(directory, DEFAULT_SEGMENT_SIZE, true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create a temporary archive store.", e);
+        }
+    }
+
+    // Appends an advertisement's current state; its ID must not already be archived
+    public synchronized void append(Advertisement ad) {
+        ensureOpen();
+        if (positionsByID.containsKey(ad.getAdvertID())) {
+            throw new IllegalStateException("Advertisement " + ad.getAdvertID() + " is already archived.");
+        }
+        byte[][] strings = AdvertisementCodec.encodeStrings(ad);
+        int length = AdvertisementCodec.encodedLength(strings);
+        if (Integer.BYTES + length > segmentSize) {
+            throw new IllegalArgumentException("Advertisement " + ad.getAdvertID() + " is too large for an archive segment.");
+        }
+        if (writeSegment < 0 || writeOffset + Integer.BYTES + length > segmentSize) {
+            int next = writeSegment + 1;
+            if (next == segments.size()) {
+                try {
+                    mapSegment(next);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not create an archive segment.", e);
+                }
+            }
+            writeSegment = next;
+            writeOffset = 0;
+        }
+
+        ByteBuffer buffer = segments.get(writeSegment).duplicate();
+        buffer.position(writeOffset + Integer.BYTES);
+        AdvertisementCodec.write(buffer, ad, strings);
+        buffer.putInt(writeOffset, length); // Written last, so the record only becomes visible once complete
+
+        addPosition(ad.getAdvertID(), ((long) writeSegment << 32) | writeOffset);
+        writeOffset += Integer.BYTES + length;
+    }
+
+    public synchronized boolean contains(String advertID) {
+        ensureOpen();
+        return positionsByID.containsKey(advertID);
+    }
+
+    public synchronized int size() {
+        ensureOpen();
+        return count;
+    }
+
+    // Reads back the advertisement archived at the given index in archive order
+    public synchronized Advertisement get(int index) {
+        ensureOpen();
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return read(positions[index]);
+    }
+
+    // Reads back an advertisement by its ID, or returns null if it is not archived
+    public synchronized Advertisement find(String advertID) {
+        ensureOpen();
+        Long position = positionsByID.get(advertID);
+        return position == null ? null : read(position);
+    }
+
+    // Read-only list view whose iterator streams records in archive order
+    public List<Advertisement> view() {
+        return new AbstractList<Advertisement>() {
+            @Override
+            public Advertisement get(int index) {
+                return ArchiveStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return ArchiveStore.this.size();
+            }
+
+            @Override
+            public Iterator<Advertisement> iterator() {
+                return new Iterator<Advertisement>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < ArchiveStore.this.size();
+                    }
+
+                    @Override
+                    public Advertisement next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return ArchiveStore.this.get(next++);
+                    }
+                };
+            }
+        };
+    }
+
+    // Flushes written records to disk, including those in segments filled since the last force
+    public synchronized void force() {
+        ensureOpen();
+        for (int segment = unforcedFrom; segment <= writeSegment; segment++) {
+            segments.get(segment).force();
+        }
+        unforcedFrom = Math.max(writeSegment, 0);
+    }
+
+    // Discards every record but keeps the segment files mapped, so a store can be reused without creating new files
+    public synchronized void clear() {
+        ensureOpen();
+        byte[] zeros = new byte[8192];
+        for (int segment = 0; segment <= writeSegment; segment++) {
+            ByteBuffer buffer = segments.get(segment).duplicate();
+            int end = segment == writeSegment ? writeOffset : buffer.capacity();
+            while (buffer.position() < end) {
+                buffer.put(zeros, 0, Math.min(zeros.length, end - buffer.position()));
+            }
+            segments.get(segment).force();
+        }
+        positionsByID.clear();
+        count = 0;
+        writeSegment = -1;
+        writeOffset = 0;
+        unforcedFrom = 0;
+    }
+
+    // Flushes and releases the segments, and deletes the files of a temporary store; the store cannot be used again
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        force();
+        closed = true;
+        int segmentCount = segments.size();
+        segments.clear();
+        if (temporary) {
+            try {
+                for (int segment = 0; segment < segmentCount; segment++) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not delete the temporary archive store.", e);
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Archive store has been closed.");
+        }
+    }
+
+    private Advertisement read(long position) {
+        ByteBuffer buffer = segments.get((int) (position >>> 32)).duplicate();
+        buffer.position((int) position + Integer.BYTES);
+        return AdvertisementCodec.read(buffer);
+    }
+
+    // Indexes the complete records in a segment and returns the offset after the last one
+    private int scanSegment(int segment) {
+        ByteBuffer buffer = segments.get(segment).duplicate();
+        int offset = 0;
+        while (offset + Integer.BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + Integer.BYTES + length > buffer.capacity()) {
+                break;
+            }
+            buffer.position(offset + Integer.BYTES);
+            addPosition(AdvertisementCodec.readString(buffer), ((long) segment << 32) | offset); // The ID comes first
+            offset += Integer.BYTES + length;
+        }
+        return offset;
+    }
+
+    private void addPosition(String advertID, long position) {
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+        }
+        positions[count++] = position;
+        positionsByID.put(advertID, position);
+    }
+
+    private void mapSegment(int segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = Math.max(channel.size(), segmentSize);
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+        }
+        if (temporary) {
+            segmentPath(segment).toFile().deleteOnExit();
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("archive-%05d.seg", segment));
+    }
+}
+
+/**
+ * Writes advertisement listings, one details line per advertisement, without building a string per line.
+ * Character sinks receive the details piece by piece. Channels receive each advertisement's cached UTF-8
+ * line, copied into a per-thread direct buffer that is written out whenever it fills, so listing a large
+ * catalogue to a file or socket does not allocate per advertisement once the lines are cached.
+ */
+final class DetailsRenderer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private DetailsRenderer() {
+    }
+
+    // Writes each advertisement's details on its own line, ending lines with the platform line separator
+    public static void render(Iterable<Advertisement> ads, Appendable out) throws IOException {
+        String lineSeparator = System.lineSeparator();
+        for (Advertisement ad : ads) {
+            ad.writeDetails(out);
+            out.append(lineSeparator);
+        }
+    }
+
+    // Writes each advertisement's details as a UTF-8 line ending in '\n' and returns the number of bytes written
+    public static long render(Iterable<Advertisement> ads, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear();
+        long written = 0;
+        for (Advertisement ad : ads) {
+            byte[] line = ad.getEncodedDetails();
+            int offset = 0;
+            while (offset < line.length) { // Lines longer than the buffer go out in several writes
+                if (!buffer.hasRemaining()) {
+                    written += drain(buffer, channel);
+                }
+                int length = Math.min(line.length - offset, buffer.remaining());
+                buffer.put(line, offset, length);
+                offset += length;
+            }
+            if (!buffer.hasRemaining()) {
+                written += drain(buffer, channel);
+            }
+            buffer.put((byte) '\n');
+        }
+        written += drain(buffer, channel);
+        return written;
+    }
+
+    // Writes out everything in the buffer and leaves it empty for filling
+    private static int drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return length;
+    }
+}
+
+/**
+ * Binary layout of one advertisement, shared by archive segments and catalogue snapshots.
+ * Fields are ID, advertiser name, contact info, content, placement preferences and size as strings
+ * (an int byte count, -1 for null, then UTF-8), the appearance date as an epoch day, then one byte each
+ * for status, paid and processed.
+ */
+final class AdvertisementCodec {
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private AdvertisementCodec() {
+    }
+
+    // Encodes the string fields once, so their length can be known before writing
+    static byte[][] encodeStrings(Advertisement ad) {
+        return new byte[][] {
+            encode(ad.getAdvertID()), encode(ad.getAdvertiserName()), encode(ad.getContactInfo()), encode(ad.getContent()),
+            encode(ad.getPlacementPreferences()), encode(ad.getSize())
+        };
+    }
+
+    // Number of bytes write() puts for an advertisement with these encoded strings
+    static int encodedLength(byte[][] strings) {
+        int length = Long.BYTES + 3;
+        for (byte[] string : strings) {
+            length += Integer.BYTES + (string == null ? 0 : string.length);
+        }
+        return length;
+    }
+
+    static void write(ByteBuffer buffer, Advertisement ad, byte[][] strings) {
+        for (byte[] string : strings) {
+            putString(buffer, string);
+        }
+        buffer.putLong(ad.getAppearanceDate() == null ? NO_DATE : ad.getAppearanceDate().toEpochDay());
+        buffer.put((byte) ad.getStatus().ordinal());
+        buffer.put((byte) (ad.isPaid() ? 1 : 0));
+        buffer.put((byte) (ad.isProcessed() ? 1 : 0));
+    }
+
+    // Rebuilds an advertisement without validating or logging it
+    static Advertisement read(ByteBuffer buffer) {
+        String advertID = readString(buffer);
+        String advertiserName = readString(buffer);
+        String contactInfo = readString(buffer);
+        String content = readString(buffer);
+        String placementPreferences = readString(buffer);
+        String size = readString(buffer);
+        long epochDay = buffer.getLong();
+        AdStatus status = AdStatus.values()[buffer.get()];
+        boolean isPaid = buffer.get() != 0;
+        boolean isProcessed = buffer.get() != 0;
+
+        Advertisement ad = new Advertisement(advertID, advertiserName, contactInfo, content, placementPreferences,
+                                             epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay), size);
+        ad.restoreState(status, isPaid, isProcessed);
+        return ad;
+    }
+
+    static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
+/**
+ * Versioned binary snapshot of a staff member's advertisement catalogue, including status, payment and processing flags.
+ * Layout: magic, version, staff ID, staff name, advertisement count, then one [int length][advertisement] record per
+ * advertisement in capture order. Loading streams the file back through a FileChannel and rebuilds the repository
+ * without validating or logging anything.
+ */
+final class CatalogueSnapshot {
+    public static final int VERSION = 1;
+    private static final int MAGIC = 0x4144534E; // "ADSN"
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private CatalogueSnapshot() {
+    }
+
+    // Writes the snapshot to a temporary file and moves it into place, so a crash never leaves a partial snapshot
+    public static void write(MarketingStaff staff, Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            byte[][] header = {AdvertisementCodec.encode(staff.getStaffID()), AdvertisementCodec.encode(staff.getName())};
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            for (byte[] string : header) {
+                buffer = ensureSpace(channel, buffer, Integer.BYTES + (string == null ? 0 : string.length));
+                AdvertisementCodec.putString(buffer, string);
+            }
+            buffer = ensureSpace(channel, buffer, Integer.BYTES);
+            buffer.putInt(staff.advertisements.size());
+            for (Advertisement ad : staff.advertisements) {
+                byte[][] strings = AdvertisementCodec.encodeStrings(ad);
+                int length = AdvertisementCodec.encodedLength(strings);
+                buffer = ensureSpace(channel, buffer, Integer.BYTES + length);
+                buffer.putInt(length);
+                AdvertisementCodec.write(buffer, ad, strings);
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Rebuilds a staff member and their advertisements from a snapshot file
+    public static MarketingStaff load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).limit(0);
+            buffer = fill(channel, buffer, 2 * Integer.BYTES);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an advertisement catalogue snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            String[] header = new String[2];
+            for (int i = 0; i < header.length; i++) {
+                buffer = fill(channel, buffer, Integer.BYTES);
+                int length = buffer.getInt(buffer.position());
+                buffer = fill(channel, buffer, Integer.BYTES + Math.max(length, 0));
+                header[i] = AdvertisementCodec.readString(buffer);
+            }
+
+            MarketingStaff staff = new MarketingStaff(header[0], header[1]);
+            buffer = fill(channel, buffer, Integer.BYTES);
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                buffer = fill(channel, buffer, Integer.BYTES);
+                int length = buffer.getInt();
+                buffer = fill(channel, buffer, length);
+                staff.advertisements.add(AdvertisementCodec.read(buffer));
+            }
+            return staff;
+        }
+    }
+
+    // Writes out the buffer if fewer than the given number of bytes are free, growing it for oversized records
+    private static ByteBuffer ensureSpace(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        drain(channel, buffer);
+        return bytes <= buffer.capacity() ? buffer : ByteBuffer.allocateDirect(bytes);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Reads ahead until at least the given number of unread bytes are buffered, growing it for oversized records
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer target = buffer;
+        if (bytes > buffer.capacity()) {
+            target = ByteBuffer.allocateDirect(bytes);
+            target.put(buffer);
+        } else {
+            buffer.compact();
+        }
+        while (target.position() < bytes) {
+            if (channel.read(target) < 0) {
+                throw new IOException("Snapshot file is truncated.");
+            }
+        }
+        target.flip();
+        return target;
+    }
+}
+
+/**
+ * One advertisement submission read from an intake file, not yet validated or captured.
+ */
+class AdvertisementSubmission {
+    private final String advertiserName;
+    private final String contactInfo;
+    private final String content;
+    private final String placementPreferences;
+    private final LocalDate appearanceDate;
+    private final String size;
+
+    public AdvertisementSubmission(String advertiserName, String contactInfo, String content, String placementPreferences,
+                                   LocalDate appearanceDate, String size) {
+        this.advertiserName = advertiserName;
+        this.contactInfo = contactInfo;
+        this.content = content;
+        this.placementPreferences = placementPreferences;
+        this.appearanceDate = appearanceDate;
+        this.size = size;
+    }
+
+    public String getAdvertiserName() {
+        return advertiserName;
+    }
+
+    public String getContactInfo() {
+        return contactInfo;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getPlacementPreferences() {
+        return placementPreferences;
+    }
+
+    public LocalDate getAppearanceDate() {
+        return appearanceDate;
+    }
+
+    public String getSize() {
+        return size;
+    }
+}
+
+/**
+ * Streams advertisement submissions from a CSV or newline-delimited JSON file into a MarketingStaff member.
+ * A reader thread parses the file straight out of a FileChannel buffer, without building line strings, and hands
+ * batches of submissions to the calling thread through a bounded queue. When capture falls behind, the queue fills
+ * and the reader blocks, so memory use stays constant however large the file is.
+ *
+ * CSV rows have the fields advertiserName, contactInfo, content, placementPreferences, appearanceDate (ISO-8601)
+ * and size, with optional double quotes and an optional header row. NDJSON lines are objects with the same keys.
+ */
+class SubmissionImporter {
+    public enum Format {
+        CSV, NDJSON;
+
+        // Picks the format from the file extension: .ndjson and .jsonl are NDJSON, anything else is CSV
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    public static final int DEFAULT_QUEUE_CAPACITY = 8; // Batches buffered between the reader and capture
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final String[] FIELD_NAMES = {
+        "advertiserName", "contactInfo", "content", "placementPreferences", "appearanceDate", "size"
+    };
+    private static final List<AdvertisementSubmission> END_OF_FILE = new ArrayList<>();
+
+    private final MarketingStaff staff;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public SubmissionImporter(MarketingStaff staff) {
+        this(staff, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public SubmissionImporter(MarketingStaff staff, int batchSize, int queueCapacity) {
+        if (batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Batch size and queue capacity must be at least 1.");
+        }
+        this.staff = staff;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public ImportSummary importFile(Path file) throws IOException {
+        return importFile(file, Format.forFile(file));
+    }
+
+    // Imports every submission in the file, capturing them on the calling thread in file order
+    public ImportSummary importFile(Path file, Format format) throws IOException {
+        BlockingQueue<List<AdvertisementSubmission>> batches = new ArrayBlockingQueue<>(queueCapacity);
+        SubmissionParser parser = new SubmissionParser(format, batches);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        Thread reader = new Thread(() -> parser.readAll(channel), "submission-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        int imported = 0;
+        int rejected = 0;
+        try {
+            List<AdvertisementSubmission> batch;
+            while ((batch = batches.take()) != END_OF_FILE) {
+                CaptureResult result = staff.captureAll(batch);
+                imported += result.getCapturedCount();
+                rejected += result.getFailureCount();
+            }
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing " + file, e);
+        } finally {
+            reader.interrupt(); // Unblocks the reader if capture failed part way through
+            channel.close();
+        }
+        Throwable failure = parser.failure;
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("Could not parse " + file, failure);
+        }
+        return new ImportSummary(imported, rejected, parser.malformed);
+    }
+
+    /**
+     * Byte-level parser run on the reader thread. Field bytes are collected in a reusable array and decoded
+     * straight to strings; CSV is parsed with a state machine, and each NDJSON line is parsed from a reusable
+     * line buffer since it cannot contain raw newlines.
+     */
+    private final class SubmissionParser {
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3;
+
+        private final Format format;
+        private final BlockingQueue<List<AdvertisementSubmission>> batches;
+        private final String[] fields = new String[FIELD_NAMES.length];
+        private byte[] scratch = new byte[256]; // Bytes of the current CSV field or NDJSON line
+        private int scratchLength;
+        private byte[] decoded = new byte[256]; // Unescaped bytes of an NDJSON string
+        private int decodedLength;
+        private int fieldCount;
+        private boolean tooManyFields;
+        private int csvState = FIELD_START;
+        private boolean firstRecord = true;
+        private List<AdvertisementSubmission> batch = new ArrayList<>();
+        private volatile int malformed;
+        private volatile Throwable failure; // Whatever stopped the reader, rethrown by the consumer
+
+        SubmissionParser(Format format, BlockingQueue<List<AdvertisementSubmission>> batches) {
+            this.format = format;
+            this.batches = batches;
+        }
+
+        void readAll(FileChannel channel) {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        if (format == Format.CSV) {
+                            acceptCsv(buffer.get());
+                        } else {
+                            acceptNdjson(buffer.get());
+                        }
+                    }
+                    buffer.clear();
+                }
+                if (format == Format.CSV) {
+                    if (csvState != FIELD_START || fieldCount > 0) {
+                        endCsvRecord();
+                    }
+                } else if (scratchLength > 0) {
+                    parseNdjsonLine();
+                }
+                if (!batch.isEmpty()) {
+                    batches.put(batch);
+                }
+            } catch (InterruptedException e) {
+                return; // Import abandoned by the consumer
+            } catch (Throwable e) {
+                failure = e; // Any failure must still end the file, or the consumer waits forever
+            }
+            try {
+                batches.put(END_OF_FILE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void acceptCsv(byte b) throws InterruptedException {
+            switch (csvState) {
+                case FIELD_START:
+                case UNQUOTED:
+                    if (b == ',') {
+                        endCsvField();
+                    } else if (b == '\n') {
+                        endCsvRecord();
+                    } else if (b == '"' && csvState == FIELD_START) {
+                        csvState = QUOTED;
+                    } else if (b != '\r') {
+                        appendScratch(b);
+                        csvState = UNQUOTED;
+                    }
+                    break;
+                case QUOTED:
+                    if (b == '"') {
+                        csvState = QUOTE_IN_QUOTED;
+                    } else {
+                        appendScratch(b);
+                    }
+                    break;
+                default: // QUOTE_IN_QUOTED
+                    if (b == '"') {
+                        appendScratch(b); // Escaped quote
+                        csvState = QUOTED;
+                    } else if (b == ',') {
+                        endCsvField();
+                    } else if (b == '\n') {
+                        endCsvRecord();
+                    } else if (b != '\r') {
+                        appendScratch(b);
+                        csvState = UNQUOTED;
+                    }
+            }
+        }
+
+        private void endCsvField() {
+            if (fieldCount < fields.length) {
+                fields[fieldCount++] = new String(scratch, 0, scratchLength, StandardCharsets.UTF_8);
+            } else {
+                tooManyFields = true;
+            }
+            scratchLength = 0;
+            csvState = FIELD_START;
+        }
+
+        private void endCsvRecord() throws InterruptedException {
+            boolean blank = fieldCount == 0 && scratchLength == 0 && csvState == FIELD_START;
+            endCsvField();
+            if (!blank) {
+                boolean header = firstRecord && FIELD_NAMES[0].equalsIgnoreCase(fields[0]);
+                firstRecord = false;
+                if (!header) {
+                    emit(tooManyFields ? -1 : fieldCount);
+                }
+            }
+            fieldCount = 0;
+            tooManyFields = false;
+        }
+
+        private void acceptNdjson(byte b) throws InterruptedException {
+            if (b == '\n') {
+                parseNdjsonLine();
+            } else {
+                appendScratch(b);
+            }
+        }
+
+        // Parses one flat JSON object from the line buffer; string, number, boolean and null values are accepted
+        private void parseNdjsonLine() throws InterruptedException {
+            int length = scratchLength;
+            scratchLength = 0;
+            Arrays.fill(fields, null);
+            int position = skipWhitespace(0, length);
+            if (position == length) {
+                return; // Blank line
+            }
+            try {
+                position = expect(position, length, '{');
+                position = skipWhitespace(position, length);
+                if (position < length && scratch[position] == '}') {
+                    emit(0);
+                    return;
+                }
+                while (true) {
+                    position = skipWhitespace(position, length);
+                    position = expect(position, length, '"');
+                    int keyEnd = readJsonString(position, length);
+                    String key = new String(decoded, 0, decodedLength, StandardCharsets.UTF_8);
+                    position = skipWhitespace(keyEnd, length);
+                    position = expect(position, length, ':');
+                    position = skipWhitespace(position, length);
+                    String value;
+                    if (position < length && scratch[position] == '"') {
+                        position = readJsonString(position + 1, length);
+                        value = new String(decoded, 0, decodedLength, StandardCharsets.UTF_8);
+                    } else {
+                        int start = position;
+                        while (position < length && scratch[position] != ',' && scratch[position] != '}'
+                                && scratch[position] != ' ' && scratch[position] != '\t' && scratch[position] != '\r') {
+                            position++;
+                        }
+                        value = new String(scratch, start, position - start, StandardCharsets.UTF_8);
+                        if (value.isEmpty()) {
+                            throw new IllegalArgumentException("Missing value");
+                        }
+                        if (value.equals("null")) {
+                            value = null;
+                        }
+                    }
+                    for (int i = 0; i < FIELD_NAMES.length; i++) {
+                        if (FIELD_NAMES[i].equals(key)) {
+                            fields[i] = value;
+                        }
+                    }
+                    position = skipWhitespace(position, length);
+                    if (position < length && scratch[position] == ',') {
+                        position++;
+                    } else {
+                        expect(position, length, '}');
+                        break;
+                    }
+                }
+                emit(FIELD_NAMES.length); // Missing keys stay null and fail validation
+            } catch (IllegalArgumentException e) {
+                malformed++;
+            }
+        }
+
+        // Unescapes a JSON string starting after its opening quote into decoded; returns the index after the closing quote
+        private int readJsonString(int position, int length) {
+            decodedLength = 0;
+            while (position < length) {
+                byte b = scratch[position++];
+                if (b == '"') {
+                    return position;
+                }
+                if (b != '\\') {
+                    appendDecoded(b);
+                    continue;
+                }
+                if (position == length) {
+                    break;
+                }
+                byte escape = scratch[position++];
+                switch (escape) {
+                    case 'n': appendDecoded((byte) '\n'); break;
+                    case 't': appendDecoded((byte) '\t'); break;
+                    case 'r': appendDecoded((byte) '\r'); break;
+                    case 'b': appendDecoded((byte) '\b'); break;
+                    case 'f': appendDecoded((byte) '\f'); break;
+                    case 'u':
+                        int codePoint = readHex(position, length);
+                        position += 4;
+                        if (Character.isHighSurrogate((char) codePoint) && position + 6 <= length
+                                && scratch[position] == '\\' && scratch[position + 1] == 'u') {
+                            int low = readHex(position + 2, length);
+                            if (Character.isLowSurrogate((char) low)) {
+                                codePoint = Character.toCodePoint((char) codePoint, (char) low);
+                                position += 6;
+                            }
+                        }
+                        appendCodePoint(codePoint);
+                        break;
+                    default: appendDecoded(escape); // \" \\ \/
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
+
+        private int readHex(int position, int length) {
+            if (position + 4 > length) {
+                throw new IllegalArgumentException("Truncated escape");
+            }
+            int value = 0;
+            for (int i = position; i < position + 4; i++) {
+                int digit = Character.digit(scratch[i], 16);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("Invalid escape");
+                }
+                value = value * 16 + digit;
+            }
+            return value;
+        }
+
+        private void appendCodePoint(int codePoint) {
+            if (codePoint < 0x80) {
+                appendDecoded((byte) codePoint);
+            } else if (codePoint < 0x800) {
+                appendDecoded((byte) (0xC0 | codePoint >> 6));
+                appendDecoded((byte) (0x80 | codePoint & 0x3F));
+            } else if (codePoint < 0x10000) {
+                appendDecoded((byte) (0xE0 | codePoint >> 12));
+                appendDecoded((byte) (0x80 | codePoint >> 6 & 0x3F));
+                appendDecoded((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                appendDecoded((byte) (0xF0 | codePoint >> 18));
+                appendDecoded((byte) (0x80 | codePoint >> 12 & 0x3F));
+                appendDecoded((byte) (0x80 | codePoint >> 6 & 0x3F));
+                appendDecoded((byte) (0x80 | codePoint & 0x3F));
+            }
+        }
+
+        private int skipWhitespace(int position, int length) {
+            while (position < length && (scratch[position] == ' ' || scratch[position] == '\t' || scratch[position] == '\r')) {
+                position++;
+            }
+            return position;
+        }
+
+        private int expect(int position, int length, char expected) {
+            if (position >= length || scratch[position] != expected) {
+                throw new IllegalArgumentException("Expected " + expected);
+            }
+            return position + 1;
+        }
+
+        // Turns the parsed fields into a submission; rows with the wrong number of fields or a bad date are malformed
+        private void emit(int parsedFields) throws InterruptedException {
+            if (parsedFields != FIELD_NAMES.length) {
+                malformed++;
+                return;
+            }
+            LocalDate appearanceDate = null;
+            if (fields[4] != null && !fields[4].isEmpty()) {
+                try {
+                    appearanceDate = LocalDate.parse(fields[4].trim());
+                } catch (DateTimeParseException e) {
+                    malformed++;
+                    return;
+                }
+            }
+            batch.add(new AdvertisementSubmission(fields[0], fields[1], fields[2], fields[3], appearanceDate, fields[5]));
+            if (batch.size() == batchSize) {
+                batches.put(batch); // Blocks while the queue is full
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        private void appendScratch(byte b) {
+            if (scratchLength == scratch.length) {
+                scratch = Arrays.copyOf(scratch, scratchLength * 2);
+            }
+            scratch[scratchLength++] = b;
+        }
+
+        private void appendDecoded(byte b) {
+            if (decodedLength == decoded.length) {
+                decoded = Arrays.copyOf(decoded, decodedLength * 2);
+            }
+            decoded[decodedLength++] = b;
+        }
+    }
+}
+
+/**
+ * Counts from importing a submission file: captured, rejected by validation, and unparseable rows.
+ */
+class ImportSummary {
+    private final int importedCount;
+    private final int rejectedCount;
+    private final int malformedCount;
+
+    public ImportSummary(int importedCount, int rejectedCount, int malformedCount) {
+        this.importedCount = importedCount;
+        this.rejectedCount = rejectedCount;
+        this.malformedCount = malformedCount;
+    }
+
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public int getMalformedCount() {
+        return malformedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Imported: " + importedCount + ", Rejected: " + rejectedCount + ", Malformed: " + malformedCount;
+    }
+}
+
+/**
+ * Handles payment confirmation for advertisements, one at a time or from a provider's settlement file.
+ */
+class PaymentProcessor {
+    private static final int MAX_REPORTED_UNKNOWN_IDS = 100;
+
+    // Confirms payment for an advertisement; a repeated confirmation changes nothing and is reported as a duplicate
+    public void confirmPayment(Advertisement ad) {
+        long start = System.nanoTime();
+        if (!ad.markPaid()) {
+            WorkflowEvents.publish(WorkflowEventType.PAYMENT_DUPLICATE, ad);
+            WorkflowMetrics.record(WorkflowStage.PAYMENT, 0, start); // A call, but no newly paid advertisement
+            return;
+        }
+        WorkflowEvents.publish(WorkflowEventType.PAYMENT_CONFIRMED, ad);
+        WorkflowMetrics.record(WorkflowStage.PAYMENT, start);
+    }
+
+    // Streams a settlement file and confirms payment for every advertisement it lists.
+    // Each line is one settlement row with the advertisement ID in the first comma-separated field; blank lines,
+    // lines starting with '#' and an "advertID" header row are skipped. Confirmations are idempotent: IDs that are
+    // already paid, including repeats within the file, count as duplicates, and IDs not in the repository count as
+    // unknown. Nothing is logged per row.
+    public SettlementSummary reconcile(Path settlementFile, AdvertisementRepository advertisements) throws IOException {
+        long start = System.nanoTime();
+        int matched = 0;
+        int duplicates = 0;
+        int unknown = 0;
+        List<String> unknownIDs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(settlementFile, StandardCharsets.UTF_8)) {
+            String line;
+            boolean firstRow = true;
+            while ((line = reader.readLine()) != null) {
+                int end = line.indexOf(',');
+                String advertID = (end < 0 ? line : line.substring(0, end)).trim();
+                if (advertID.isEmpty() || advertID.charAt(0) == '#' || (firstRow && advertID.equalsIgnoreCase("advertID"))) {
+                    continue;
+                }
+                firstRow = false;
+
+                Advertisement ad = advertisements.findByID(advertID);
+                if (ad == null) {
+                    unknown++;
+                    if (unknownIDs.size() < MAX_REPORTED_UNKNOWN_IDS) {
+                        unknownIDs.add(advertID);
+                    }
+                } else if (ad.markPaid()) {
+                    matched++;
+                } else {
+                    duplicates++;
+                }
+            }
+        }
+        WorkflowMetrics.record(WorkflowStage.PAYMENT, matched, start);
+        return new SettlementSummary(matched, duplicates, unknown, unknownIDs);
+    }
+
+    // Checks the payment status of an advertisement
+    public boolean checkPaymentStatus(Advertisement ad) {
+        return ad.isPaid();
+    }
+}
+
+/**
+ * Handles advertisement suitability checks and approval.
+ */
+class ReviewProcess {
+    private final ContentModerator moderator;
+
+    // Constructor using the shared default blocklist
+    public ReviewProcess() {
+        this(ContentModerator.getDefault());
+    }
+
+    // Constructor using a specific blocklist
+    public ReviewProcess(ContentModerator moderator) {
+        this.moderator = moderator;
+    }
+
+    // Assesses the suitability of an advertisement
+    public void assessSuitability(Advertisement ad) {
+        long start = System.nanoTime();
+        recordDecision(ad, isSuitable(ad));
+        WorkflowMetrics.record(WorkflowStage.REVIEW, start);
+    }
+
+    // Checks the content without changing the advertisement; safe to call from several threads
+    public boolean isSuitable(Advertisement ad) {
+        return !moderator.containsBlockedTerm(ad.getContent());
+    }
+
+    // Applies a suitability decision to the advertisement's review status
+    public void recordDecision(Advertisement ad, boolean suitable) {
+        if (!suitable) {
+            ad.setStatus(AdStatus.REJECTED);
+            WorkflowEvents.publish(WorkflowEventType.REVIEW_REJECTED, ad);
+        } else {
+            ad.setStatus(AdStatus.APPROVED);
+            WorkflowEvents.publish(WorkflowEventType.REVIEW_APPROVED, ad);
+        }
+    }
+
+    // Lists the blocked terms found in an advertisement's content
+    public List<String> findBlockedTerms(Advertisement ad) {
+        return moderator.findBlockedTerms(ad.getContent());
+    }
+}
+
+/**
+ * Checks the suitability of a slice of a review batch, splitting in half until the slice is small enough.
+ */
+class SuitabilityCheckTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int SLICE_SIZE = 512;
+
+    private final ReviewProcess reviewProcess;
+    private final Advertisement[] batch;
+    private final boolean[] suitable;
+    private final int from;
+    private final int to;
+
+    public SuitabilityCheckTask(ReviewProcess reviewProcess, Advertisement[] batch, boolean[] suitable, int from, int to) {
+        this.reviewProcess = reviewProcess;
+        this.batch = batch;
+        this.suitable = suitable;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= SLICE_SIZE) {
+            for (int i = from; i < to; i++) {
+                suitable[i] = reviewProcess.isSuitable(batch[i]);
+            }
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new SuitabilityCheckTask(reviewProcess, batch, suitable, from, middle),
+                      new SuitabilityCheckTask(reviewProcess, batch, suitable, middle, to));
+        }
+    }
+}
+
+/**
+ * Outcome of reconciling a settlement file: newly confirmed, already confirmed and unknown advertisement IDs.
+ * Only the first unknown IDs are kept, to bound the summary's size.
+ */
+class SettlementSummary {
+    private final int matchedCount;
+    private final int duplicateCount;
+    private final int unknownCount;
+    private final List<String> unknownIDs;
+
+    public SettlementSummary(int matchedCount, int duplicateCount, int unknownCount, List<String> unknownIDs) {
+        this.matchedCount = matchedCount;
+        this.duplicateCount = duplicateCount;
+        this.unknownCount = unknownCount;
+        this.unknownIDs = Collections.unmodifiableList(unknownIDs);
+    }
+
+    public int getMatchedCount() {
+        return matchedCount;
+    }
+
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public int getUnknownCount() {
+        return unknownCount;
+    }
+
+    public List<String> getUnknownIDs() {
+        return unknownIDs;
+    }
+
+    @Override
+    public String toString() {
+        return "Matched: " + matchedCount + ", Duplicates: " + duplicateCount + ", Unknown: " + unknownCount;
+    }
+}
+
+/**
+ * Counts of approved and rejected advertisements from a batch review.
+ */
+class ReviewSummary {
+    private final int approvedCount;
+    private final int rejectedCount;
+
+    public ReviewSummary(int approvedCount, int rejectedCount) {
+        this.approvedCount = approvedCount;
+        this.rejectedCount = rejectedCount;
+    }
+
+    public int getApprovedCount() {
+        return approvedCount;
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public int getTotalCount() {
+        return approvedCount + rejectedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Approved: " + approvedCount + ", Rejected: " + rejectedCount;
+    }
+}
+
+/**
+ * Reasons a submission can fail validation when it is captured.
+ */
+enum CaptureError {
+    MISSING_ADVERTISER_NAME("Advertiser name cannot be null or empty."),
+    MISSING_CONTACT_INFO("Contact information cannot be null or empty."),
+    MISSING_CONTENT("Content cannot be null or empty."),
+    MISSING_PLACEMENT_PREFERENCES("Placement preferences cannot be null or empty."),
+    MISSING_APPEARANCE_DATE("Appearance date cannot be null or in the past."),
+    INVALID_SIZE("Size cannot be null, empty, or excessively large.");
+
+    private static final CaptureError[] VALUES = values();
+
+    private final String message;
+
+    CaptureError(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    static CaptureError fromCode(int code) {
+        return VALUES[code];
+    }
+}
+
+/**
+ * Outcome of a bulk capture: how many submissions were captured, plus the row index and error code of each
+ * one that failed validation. Failures are kept in two parallel primitive arrays rather than one object per row.
+ */
+class CaptureResult {
+    private int capturedCount;
+    private int failureCount;
+    private int[] failedRows = new int[16];
+    private byte[] errorCodes = new byte[16];
+
+    void recordCapture() {
+        capturedCount++;
+    }
+
+    void recordFailure(int row, CaptureError error) {
+        if (failureCount == failedRows.length) {
+            failedRows = Arrays.copyOf(failedRows, failureCount * 2);
+            errorCodes = Arrays.copyOf(errorCodes, failureCount * 2);
+        }
+        failedRows[failureCount] = row;
+        errorCodes[failureCount] = (byte) error.ordinal();
+        failureCount++;
+    }
+
+    public int getCapturedCount() {
+        return capturedCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    // Row index, within the submitted batch, of the i-th failure
+    public int getFailedRow(int i) {
+        if (i < 0 || i >= failureCount) {
+            throw new IndexOutOfBoundsException("Failure index: " + i);
+        }
+        return failedRows[i];
+    }
+
+    public CaptureError getError(int i) {
+        if (i < 0 || i >= failureCount) {
+            throw new IndexOutOfBoundsException("Failure index: " + i);
+        }
+        return CaptureError.fromCode(errorCodes[i]);
+    }
+
+    @Override
+    public String toString() {
+        return "Captured: " + capturedCount + ", Failed: " + failureCount;
+    }
+}
+
+/**
+ * Checks advertisement content against a blocklist of terms.
+ * The terms are compiled into one Aho-Corasick automaton, so each advertisement is scanned in a single pass
+ * regardless of how many terms there are. Matching ignores case and only counts whole words.
+ * The blocklist can be replaced or reloaded from a file while reviews are running.
+ */
+class ContentModerator {
+    private static final ContentModerator DEFAULT = new ContentModerator(Collections.singletonList("inappropriate"));
+
+    private volatile TermAutomaton automaton;
+    private FileTime loadedModifiedTime; // Modification time of the last term file loaded
+
+    // Constructor to compile an initial term list
+    public ContentModerator(Collection<String> terms) {
+        this.automaton = new TermAutomaton(terms);
+    }
+
+    // Returns the moderator shared by review processes that are not given their own
+    public static ContentModerator getDefault() {
+        return DEFAULT;
+    }
+
+    // Checks whether the content contains at least one blocked term
+    public boolean containsBlockedTerm(String content) {
+        return automaton.scan(content, null);
+    }
+
+    // Lists the distinct blocked terms found in the content, in order of first appearance
+    public List<String> findBlockedTerms(String content) {
+        Set<String> matches = new LinkedHashSet<>();
+        automaton.scan(content, matches);
+        return new ArrayList<>(matches);
+    }
+
+    // Number of terms in the current blocklist
+    public int getTermCount() {
+        return automaton.terms.length;
+    }
+
+    // Replaces the blocklist; scans already running finish with the previous one
+    public void setTerms(Collection<String> terms) {
+        automaton = new TermAutomaton(terms);
+    }
+
+    // Loads the blocklist from a file with one term per line; blank lines and lines starting with # are skipped
+    public synchronized void reloadFrom(Path termFile) throws IOException {
+        FileTime modifiedTime = Files.getLastModifiedTime(termFile);
+        List<String> terms = new ArrayList<>();
+        for (String line : Files.readAllLines(termFile, StandardCharsets.UTF_8)) {
+            String term = line.trim();
+            if (!term.isEmpty() && !term.startsWith("#")) {
+                terms.add(term);
+            }
+        }
+        setTerms(terms);
+        loadedModifiedTime = modifiedTime;
+    }
+
+    // Reloads the blocklist if the file changed since it was last loaded
+    public synchronized boolean reloadIfModified(Path termFile) throws IOException {
+        if (Files.getLastModifiedTime(termFile).equals(loadedModifiedTime)) {
+            return false;
+        }
+        reloadFrom(termFile);
+        return true;
+    }
+
+    // Polls the term file in the background and reloads it whenever it changes
+    public ScheduledExecutorService watch(Path termFile, long intervalMillis) {
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "content-moderator-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            try {
+                reloadIfModified(termFile);
+            } catch (IOException e) {
+                System.err.println("Could not reload blocked terms from " + termFile + ": " + e.getMessage());
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        return watcher;
+    }
+
+    /**
+     * Immutable Aho-Corasick automaton over lower-cased terms.
+     * Each state keeps its transitions as a sorted character array, and its output list already
+     * includes the terms reachable through failure links.
+     */
+    private static final class TermAutomaton {
+        private static final int[] NO_OUTPUT = new int[0];
+
+        private final String[] terms;
+        private final char[][] transitionChars;
+        private final int[][] transitionTargets;
+        private final int[] failure;
+        private final int[][] outputs; // Indexes into terms ending at each state
+
+        TermAutomaton(Collection<String> termList) {
+            Set<String> distinctTerms = new LinkedHashSet<>();
+            for (String term : termList) {
+                String folded = fold(term.trim());
+                if (!folded.isEmpty()) {
+                    distinctTerms.add(folded);
+                }
+            }
+            terms = distinctTerms.toArray(new String[0]);
+
+            // Build the trie
+            List<Map<Character, Integer>> trie = new ArrayList<>();
+            List<List<Integer>> trieOutputs = new ArrayList<>();
+            trie.add(new HashMap<>());
+            trieOutputs.add(new ArrayList<>());
+            for (int t = 0; t < terms.length; t++) {
+                int state = 0;
+                for (int i = 0; i < terms[t].length(); i++) {
+                    Integer next = trie.get(state).get(terms[t].charAt(i));
+                    if (next == null) {
+                        next = trie.size();
+                        trie.get(state).put(terms[t].charAt(i), next);
+                        trie.add(new HashMap<>());
+                        trieOutputs.add(new ArrayList<>());
+                    }
+                    state = next;
+                }
+                trieOutputs.get(state).add(t);
+            }
+
+            // Flatten transitions into sorted arrays
+            int stateCount = trie.size();
+            transitionChars = new char[stateCount][];
+            transitionTargets = new int[stateCount][];
+            for (int state = 0; state < stateCount; state++) {
+                Character[] keys = trie.get(state).keySet().toArray(new Character[0]);
+                Arrays.sort(keys);
+                transitionChars[state] = new char[keys.length];
+                transitionTargets[state] = new int[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    transitionChars[state][i] = keys[i];
+                    transitionTargets[state][i] = trie.get(state).get(keys[i]);
+                }
+            }
+
+            // Breadth-first pass to compute failure links and merge outputs
+            failure = new int[stateCount];
+            outputs = new int[stateCount][];
+            outputs[0] = NO_OUTPUT;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int child : transitionTargets[0]) {
+                outputs[child] = toArray(trieOutputs.get(child), NO_OUTPUT);
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (int i = 0; i < transitionChars[state].length; i++) {
+                    char c = transitionChars[state][i];
+                    int child = transitionTargets[state][i];
+                    int fallback = failure[state];
+                    while (fallback != 0 && next(fallback, c) < 0) {
+                        fallback = failure[fallback];
+                    }
+                    int target = next(fallback, c);
+                    failure[child] = target < 0 ? 0 : target;
+                    outputs[child] = toArray(trieOutputs.get(child), outputs[failure[child]]);
+                    queue.add(child);
+                }
+            }
+        }
+
+        // Scans the content once; collects matches when given a set, otherwise stops at the first match
+        boolean scan(String content, Set<String> matches) {
+            boolean found = false;
+            int state = 0;
+            int length = content.length();
+            for (int i = 0; i < length; i++) {
+                char c = Character.toLowerCase(content.charAt(i));
+                int target = next(state, c);
+                while (target < 0 && state != 0) {
+                    state = failure[state];
+                    target = next(state, c);
+                }
+                state = target < 0 ? 0 : target;
+                for (int term : outputs[state]) {
+                    int start = i - terms[term].length() + 1;
+                    if (isBoundary(content, start - 1) && isBoundary(content, i + 1)) {
+                        if (matches == null) {
+                            return true;
+                        }
+                        matches.add(terms[term]);
+                        found = true;
+                    }
+                }
+            }
+            return found;
+        }
+
+        private int next(int state, char c) {
+            int i = Arrays.binarySearch(transitionChars[state], c);
+            return i < 0 ? -1 : transitionTargets[state][i];
+        }
+
+        // Lower-cases character by character, matching how content is folded during a scan
+        private static String fold(String term) {
+            char[] chars = term.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = Character.toLowerCase(chars[i]);
+            }
+            return new String(chars);
+        }
+
+        private static boolean isBoundary(String content, int index) {
+            return index < 0 || index >= content.length() || !Character.isLetterOrDigit(content.charAt(index));
+        }
+
+        private static int[] toArray(List<Integer> own, int[] inherited) {
+            if (own.isEmpty()) {
+                return inherited;
+            }
+            int[] merged = Arrays.copyOf(inherited, inherited.length + own.size());
+            for (int i = 0; i < own.size(); i++) {
+                merged[inherited.length + i] = own.get(i);
+            }
+            return merged;
+        }
+    }
+}
+
+/**
+ * Handles the processing of advertisements.
+ */
+class ProcessingCenter {
+    private final PublicationScheduler scheduler; // Holds future-dated advertisements, or null to process on receipt
+
+    public ProcessingCenter() {
+        this(null);
+    }
+
+    // Processing center that holds approved, paid advertisements until their appearance date
+    public ProcessingCenter(PublicationScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    // Processes an advertisement for publication, or schedules it if it appears after the scheduler's current date
+    public void receiveAdvertisement(Advertisement ad) {
+        long start = System.nanoTime();
+        if (scheduler != null && ad.getStatus() == AdStatus.APPROVED && ad.isPaid() && scheduler.schedule(ad)) {
+            WorkflowEvents.publish(WorkflowEventType.SCHEDULED, ad);
+        } else if (ad.markProcessed()) {
+            WorkflowEvents.publish(WorkflowEventType.PROCESSED, ad);
+        } else {
+            WorkflowEvents.publish(WorkflowEventType.PROCESSING_REFUSED, ad);
+        }
+        WorkflowMetrics.record(WorkflowStage.FORWARDING, start);
+    }
+
+    // Advances the scheduler to the given date and processes every advertisement that fell due, one batch per
+    // day and placement. Advertisements whose approval or payment was withdrawn meanwhile are refused.
+    // Returns the number processed.
+    public int publishDue(LocalDate date) {
+        if (scheduler == null) {
+            throw new IllegalStateException("Processing center has no publication scheduler.");
+        }
+        long start = System.nanoTime();
+        int processed = 0;
+        for (List<Advertisement> batch : scheduler.advanceTo(date)) {
+            for (Advertisement ad : batch) {
+                if (ad.markProcessed()) {
+                    WorkflowEvents.publish(WorkflowEventType.PROCESSED, ad);
+                    processed++;
+                } else {
+                    WorkflowEvents.publish(WorkflowEventType.PROCESSING_REFUSED, ad);
+                }
+            }
+        }
+        WorkflowMetrics.record(WorkflowStage.FORWARDING, processed, start);
+        return processed;
+    }
+
+    public PublicationScheduler getScheduler() {
+        return scheduler;
+    }
+}
+
+/**
+ * Holds advertisements until their appearance date in a timing wheel with one slot per day.
+ * The wheel covers the next WHEEL_DAYS days, so scheduling within that horizon is an array index plus a list
+ * append; later dates wait in an overflow map keyed by day and cascade into the wheel as it turns. Each slot
+ * groups its advertisements by placement, and advancing the wheel releases whole slots, so no tick ever
+ * scans advertisements that are not yet due.
+ */
+class PublicationScheduler {
+    static final int WHEEL_DAYS = 512; // Power of two, about 17 months
+    private static final int WHEEL_MASK = WHEEL_DAYS - 1;
+
+    private final Map<String, List<Advertisement>>[] wheel; // Slot per day, advertisements by placement; null when empty
+    private final TreeMap<Long, Map<String, List<Advertisement>>> overflow = new TreeMap<>(); // Days past the horizon
+    private long currentDay; // Last day released, as an epoch day
+    private long size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PublicationScheduler(LocalDate today) {
+        this.currentDay = today.toEpochDay();
+        this.wheel = new Map[WHEEL_DAYS];
+    }
+
+    public synchronized LocalDate getCurrentDate() {
+        return LocalDate.ofEpochDay(currentDay);
+    }
+
+    // Number of advertisements waiting for their appearance date
+    public synchronized long size() {
+        return size;
+    }
+
+    // Holds the advertisement until its appearance date. Returns false, without holding it, if that date is not
+    // after the current date, in which case the advertisement is due now.
+    public synchronized boolean schedule(Advertisement ad) {
+        if (ad.getAppearanceDate() == null) {
+            throw new IllegalArgumentException("Advertisement " + ad.getAdvertID() + " has no appearance date.");
+        }
+        long day = ad.getAppearanceDate().toEpochDay();
+        if (day <= currentDay) {
+            return false;
+        }
+        Map<String, List<Advertisement>> slot;
+        if (day - currentDay < WHEEL_DAYS) {
+            int index = (int) (day & WHEEL_MASK);
+            slot = wheel[index];
+            if (slot == null) {
+                slot = new HashMap<>();
+                wheel[index] = slot;
+            }
+        } else {
+            slot = overflow.computeIfAbsent(day, k -> new HashMap<>());
+        }
+        slot.computeIfAbsent(ad.getPlacementPreferences(), k -> new ArrayList<>()).add(ad);
+        size++;
+        return true;
+    }
+
+    // Turns the wheel day by day up to the given date and returns the advertisements that fell due, one batch
+    // per day and placement, in day order
+    public synchronized List<List<Advertisement>> advanceTo(LocalDate date) {
+        long targetDay = date.toEpochDay();
+        List<List<Advertisement>> due = new ArrayList<>();
+        while (currentDay < targetDay) {
+            if (size == 0) {
+                currentDay = targetDay; // Nothing to release on the way
+                break;
+            }
+            currentDay++;
+            int index = (int) (currentDay & WHEEL_MASK);
+            Map<String, List<Advertisement>> slot = wheel[index];
+            if (slot != null) {
+                wheel[index] = null;
+                for (List<Advertisement> batch : slot.values()) {
+                    due.add(batch);
+                    size -= batch.size();
+                }
+            }
+            cascade();
+        }
+        return due;
+    }
+
+    // Moves overflow days that have come within the wheel's horizon into their slots
+    private void cascade() {
+        Map.Entry<Long, Map<String, List<Advertisement>>> next;
+        while ((next = overflow.firstEntry()) != null && next.getKey() - currentDay < WHEEL_DAYS) {
+            overflow.pollFirstEntry();
+            int index = (int) (next.getKey() & WHEEL_MASK);
+            if (wheel[index] == null) {
+                wheel[index] = next.getValue();
+            } else {
+                for (Map.Entry<String, List<Advertisement>> placement : next.getValue().entrySet()) {
+                    wheel[index].computeIfAbsent(placement.getKey(), k -> new ArrayList<>()).addAll(placement.getValue());
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Pages an advertisement can be placed on, from highest to lowest priority.
+ */
+enum Page {
+    FRONT("Front Page"),
+    MIDDLE("Middle Page"),
+    BACK("Back Page");
+
+    private final String label;
+
+    Page(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    // Looks up a page by its placement preference label, or returns null if there is none
+    public static Page fromLabel(String label) {
+        for (Page page : values()) {
+            if (page.label.equals(label)) {
+                return page;
+            }
+        }
+        return null;
+    }
+}
+
+/**
+ * Advertisement sizes, each taking a power-of-two number of page slots.
+ */
+enum AdSize {
+    SMALL("Small", 1),
+    MEDIUM("Medium", 2),
+    LARGE("Large", 4);
+
+    private final String label;
+    private final int slots;
+
+    AdSize(String label, int slots) {
+        this.label = label;
+        this.slots = slots;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    // Looks up a size by its label, or returns null if there is none
+    public static AdSize fromLabel(String label) {
+        for (AdSize size : values()) {
+            if (size.label.equals(label)) {
+                return size;
+            }
+        }
+        return null;
+    }
+}
+
+/**
+ * Slots given to one advertisement in one issue.
+ */
+class Placement {
+    private final LocalDate issueDate;
+    private final Page page;
+    private final int firstSlot;
+    private final AdSize size;
+
+    public Placement(LocalDate issueDate, Page page, int firstSlot, AdSize size) {
+        this.issueDate = issueDate;
+        this.page = page;
+        this.firstSlot = firstSlot;
+        this.size = size;
+    }
+
+    public LocalDate getIssueDate() {
+        return issueDate;
+    }
+
+    public Page getPage() {
+        return page;
+    }
+
+    public int getFirstSlot() {
+        return firstSlot;
+    }
+
+    public AdSize getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return issueDate + " " + page.getLabel() + " slots " + firstSlot + "-" + (firstSlot + size.getSlots() - 1);
+    }
+}
+
+/**
+ * Allocates approved advertisements to page slots in the issue for their appearance date.
+ * Each issue keeps one 64-bit occupancy bitmap per page. Sizes take 1, 2 or 4 slots aligned to their size,
+ * buddy style, so finding room is a few shifts and masks followed by a trailing-zero count, and small
+ * advertisements never split the aligned blocks that large ones need. If the preferred page is full, the
+ * advertisement goes to the next lower-priority page. Batches are packed largest first (first-fit decreasing).
+ */
+class PlacementAllocator {
+    static final int MAX_SLOTS = 64;
+    private static final long PAIRS = 0x5555555555555555L; // Bit i set for every even i: start of an aligned pair
+    private static final long QUADS = 0x1111111111111111L; // Bit i set for every i divisible by 4
+
+    private final int[] slotsPerPage = new int[Page.values().length];
+    private final Map<Long, long[]> issues = new HashMap<>(); // Occupancy bitmap per page, keyed by epoch day
+    private final Map<String, Placement> placementsByID = new HashMap<>();
+
+    public PlacementAllocator() {
+        this(16, 64, 16);
+    }
+
+    public PlacementAllocator(int frontSlots, int middleSlots, int backSlots) {
+        int[] slots = {frontSlots, middleSlots, backSlots};
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] < 1 || slots[i] > MAX_SLOTS) {
+                throw new IllegalArgumentException("Slots per page must be between 1 and " + MAX_SLOTS + ".");
+            }
+            slotsPerPage[i] = slots[i];
+        }
+    }
+
+    // Places an approved advertisement on its preferred page, or a lower-priority one if that is full.
+    // Returns the existing placement if it is already placed, or null if no page in its issue has room.
+    public synchronized Placement allocate(Advertisement ad) {
+        Placement existing = placementsByID.get(ad.getAdvertID());
+        if (existing != null) {
+            return existing;
+        }
+        validate(ad);
+        return place(ad);
+    }
+
+    // Places a batch largest first, which leaves fewer unusable gaps than placing in arrival order.
+    // Advertisements not yet placed are all checked before any slot is taken, so a bad one changes nothing.
+    public synchronized PlacementSummary allocateAll(Collection<Advertisement> ads) {
+        List<List<Advertisement>> bySize = new ArrayList<>();
+        for (int i = 0; i < AdSize.values().length; i++) {
+            bySize.add(new ArrayList<>());
+        }
+        for (Advertisement ad : ads) {
+            if (!placementsByID.containsKey(ad.getAdvertID())) {
+                validate(ad);
+            }
+            bySize.get(AdSize.fromLabel(ad.getSize()).ordinal()).add(ad);
+        }
+
+        int placed = 0;
+        int fallbacks = 0;
+        List<Advertisement> unplaced = new ArrayList<>();
+        for (int s = bySize.size() - 1; s >= 0; s--) {
+            for (Advertisement ad : bySize.get(s)) {
+                Placement placement = placementsByID.get(ad.getAdvertID());
+                if (placement == null) {
+                    placement = place(ad);
+                }
+                if (placement == null) {
+                    unplaced.add(ad);
+                    continue;
+                }
+                placed++;
+                if (!placement.getPage().getLabel().equals(ad.getPlacementPreferences())) {
+                    fallbacks++;
+                }
+            }
+        }
+        return new PlacementSummary(placed, fallbacks, unplaced);
+    }
+
+    // Checks that an advertisement can be placed: approved, with a known page, size and appearance date
+    private static void validate(Advertisement ad) {
+        if (ad.getStatus() != AdStatus.APPROVED && ad.getStatus() != AdStatus.PROCESSED) {
+            throw new IllegalStateException("Advertisement " + ad.getAdvertID() + " must be approved before it is placed.");
+        }
+        if (Page.fromLabel(ad.getPlacementPreferences()) == null) {
+            throw new IllegalArgumentException("Unknown placement preference: " + ad.getPlacementPreferences());
+        }
+        if (AdSize.fromLabel(ad.getSize()) == null) {
+            throw new IllegalArgumentException("Unknown advertisement size: " + ad.getSize());
+        }
+        if (ad.getAppearanceDate() == null) {
+            throw new IllegalArgumentException("Advertisement " + ad.getAdvertID() + " has no appearance date.");
+        }
+    }
+
+    // Takes the first free block for a validated advertisement, from its preferred page down; null if none is free
+    private Placement place(Advertisement ad) {
+        Page preferred = Page.fromLabel(ad.getPlacementPreferences());
+        AdSize size = AdSize.fromLabel(ad.getSize());
+        long[] occupancy = issues.computeIfAbsent(ad.getAppearanceDate().toEpochDay(), k -> new long[slotsPerPage.length]);
+        Page[] pages = Page.values();
+        for (int p = preferred.ordinal(); p < pages.length; p++) {
+            int slot = findFree(occupancy[p], slotsPerPage[p], size.getSlots());
+            if (slot >= 0) {
+                occupancy[p] |= blockMask(slot, size.getSlots());
+                Placement placement = new Placement(ad.getAppearanceDate(), pages[p], slot, size);
+                placementsByID.put(ad.getAdvertID(), placement);
+                return placement;
+            }
+        }
+        return null;
+    }
+
+    // Frees the advertisement's slots; returns false if it was not placed
+    public synchronized boolean release(Advertisement ad) {
+        Placement placement = placementsByID.remove(ad.getAdvertID());
+        if (placement == null) {
+            return false;
+        }
+        long[] occupancy = issues.get(placement.getIssueDate().toEpochDay());
+        occupancy[placement.getPage().ordinal()] &= ~blockMask(placement.getFirstSlot(), placement.getSize().getSlots());
+        return true;
+    }
+
+    public synchronized Placement getPlacement(Advertisement ad) {
+        return placementsByID.get(ad.getAdvertID());
+    }
+
+    // Number of unoccupied slots on a page of the issue for the given date
+    public synchronized int getFreeSlots(LocalDate issueDate, Page page) {
+        long[] occupancy = issues.get(issueDate.toEpochDay());
+        long used = occupancy == null ? 0 : occupancy[page.ordinal()];
+        return slotsPerPage[page.ordinal()] - Long.bitCount(used);
+    }
+
+    // Returns the first free block of the given size aligned to that size, or -1 if there is none
+    static int findFree(long occupied, int slots, int size) {
+        long free = ~occupied;
+        if (slots < MAX_SLOTS) {
+            free &= (1L << slots) - 1;
+        }
+        if (size >= 2) {
+            free &= (free >>> 1) & PAIRS; // Both slots of an aligned pair are free
+        }
+        if (size == 4) {
+            free &= (free >>> 2) & QUADS; // Both pairs of an aligned quad are free
+        }
+        return free == 0 ? -1 : Long.numberOfTrailingZeros(free);
+    }
+
+    private static long blockMask(int firstSlot, int size) {
+        return (size == MAX_SLOTS ? -1L : (1L << size) - 1) << firstSlot;
+    }
+}
+
+/**
+ * Result of placing a batch: how many advertisements were placed, how many of those fell back from their
+ * preferred page, and which could not be placed at all.
+ */
+class PlacementSummary {
+    private final int placedCount;
+    private final int fallbackCount;
+    private final List<Advertisement> unplaced;
+
+    public PlacementSummary(int placedCount, int fallbackCount, List<Advertisement> unplaced) {
+        this.placedCount = placedCount;
+        this.fallbackCount = fallbackCount;
+        this.unplaced = Collections.unmodifiableList(unplaced);
+    }
+
+    public int getPlacedCount() {
+        return placedCount;
+    }
+
+    public int getFallbackCount() {
+        return fallbackCount;
+    }
+
+    public List<Advertisement> getUnplaced() {
+        return unplaced;
+    }
+
+    @Override
+    public String toString() {
+        return "Placed: " + placedCount + ", Fallbacks: " + fallbackCount + ", Unplaced: " + unplaced.size();
+    }
+}
+
+/**
+ * Kinds of workflow events, each with the log message it is written out with.
+ */
+enum WorkflowEventType {
+    RECORDED("Advertisement added to the list: "),
+    CAPTURED("Advertisement details captured: "),
+    REVIEW_APPROVED("Advertisement approved for forwarding: "),
+    REVIEW_REJECTED("Advertisement rejected for inappropriate content: "),
+    PAYMENT_CONFIRMED("Payment confirmed for advertisement: "),
+    PAYMENT_DUPLICATE("Payment already confirmed for advertisement: "),
+    APPROVED("Advertisement approved for processing: "),
+    APPROVAL_REFUSED("Advertisement cannot be approved: "),
+    PROCESSED("Processing advertisement for publication: "),
+    PROCESSING_REFUSED("Cannot process advertisement: "),
+    SCHEDULED("Advertisement scheduled for publication: "),
+    ARCHIVED("Archiving advertisement: ");
+
+    private final String message;
+
+    WorkflowEventType(String message) {
+        this.message = message;
+    }
+
+    // Appends the log line for an event, without a line separator
+    public void format(StringBuilder line, Advertisement ad, AdStatus status) {
+        line.append(message);
+        switch (this) {
+            case RECORDED:
+            case CAPTURED:
+                ad.appendDetails(line, status);
+                break;
+            case APPROVED:
+            case APPROVAL_REFUSED:
+                line.append(ad.getAdvertID()).append(" - ").append(status.getLabel());
+                break;
+            default:
+                line.append(ad.getAdvertID());
+        }
+    }
+}
+
+/**
+ * Receives structured workflow events in place of printed log lines.
+ * The status is the advertisement's review status when the event happened, since it may change before the
+ * event is written out.
+ */
+interface WorkflowEventSink {
+    // Sink that drops every event, for benchmarks
+    WorkflowEventSink NO_OP = (type, ad, status) -> { };
+
+    void publish(WorkflowEventType type, Advertisement ad, AdStatus status);
+
+    // Blocks until every event published so far has been written out
+    default void flush() {
+    }
+}
+
+/**
+ * Holds the workflow event sink used by every workflow component.
+ * Until another sink is installed, events are written to standard output by an AsyncWorkflowEventSink.
+ */
+class WorkflowEvents {
+    private static volatile WorkflowEventSink sink;
+
+    private WorkflowEvents() {
+    }
+
+    public static WorkflowEventSink getSink() {
+        WorkflowEventSink current = sink;
+        if (current == null) {
+            synchronized (WorkflowEvents.class) {
+                current = sink;
+                if (current == null) {
+                    AsyncWorkflowEventSink console = new AsyncWorkflowEventSink(System.out, 8192);
+                    Runtime.getRuntime().addShutdownHook(new Thread(console::close, "workflow-events-shutdown"));
+                    sink = current = console;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Installs a sink after writing out everything queued on the previous one
+    public static void setSink(WorkflowEventSink newSink) {
+        if (newSink == null) {
+            throw new IllegalArgumentException("Event sink cannot be null.");
+        }
+        synchronized (WorkflowEvents.class) {
+            if (sink != null) {
+                sink.flush();
+            }
+            sink = newSink;
+        }
+    }
+
+    public static void publish(WorkflowEventType type, Advertisement ad) {
+        getSink().publish(type, ad, null);
+    }
+
+    public static void publish(WorkflowEventType type, Advertisement ad, AdStatus status) {
+        getSink().publish(type, ad, status);
+    }
+
+    public static void flush() {
+        getSink().flush();
+    }
+}
+
+/**
+ * Event sink that queues events in a preallocated ring buffer and formats and writes them on a background thread.
+ * Publishing claims a slot with one atomic increment and stores three references, so callers never build strings
+ * or take the output stream's lock. When the buffer is full, publishers wait for the writer to catch up.
+ * Once the sink is closed, events are formatted and written on the publishing thread instead.
+ */
+class AsyncWorkflowEventSink implements WorkflowEventSink {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FLUSH_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long SEALED = Long.MIN_VALUE; // Added to claimed when the writer stops, making it negative
+
+    private final int capacity;
+    private final int mask;
+    private final WorkflowEventType[] types;
+    private final Advertisement[] ads;
+    private final AdStatus[] statuses;
+    private final AtomicLongArray published; // Holds sequence + 1 once a slot's event is ready to be written
+    private final AtomicLong claimed = new AtomicLong(); // Next sequence handed to a publisher; negative once sealed
+    private volatile long consumed; // Sequences below this have been formatted and their slots released
+    private volatile long flushed; // Sequences below this have been flushed to the output
+    private volatile long flushTarget; // Flush as soon as this many events have been written
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+
+    private final Writer out;
+    private final Thread writer;
+
+    // Constructor taking the output stream and a power-of-two buffer capacity
+    public AsyncWorkflowEventSink(OutputStream output, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two.");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.types = new WorkflowEventType[capacity];
+        this.ads = new Advertisement[capacity];
+        this.statuses = new AdStatus[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.out = new BufferedWriter(new OutputStreamWriter(output), 1 << 16);
+        this.writer = new Thread(this::writeEvents, "workflow-event-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void publish(WorkflowEventType type, Advertisement ad, AdStatus status) {
+        long sequence = claimed.getAndIncrement();
+        if (sequence < 0) {
+            writeThrough(type, ad, status); // The writer has stopped after close()
+            return;
+        }
+        while (sequence - consumed >= capacity) {
+            if (!writer.isAlive()) {
+                throw new IllegalStateException("Event writer has stopped.");
+            }
+            wakeWriter();
+            Thread.onSpinWait();
+        }
+        int slot = (int) sequence & mask;
+        types[slot] = type;
+        ads[slot] = ad;
+        statuses[slot] = status;
+        published.lazySet(slot, sequence + 1);
+        wakeWriter();
+    }
+
+    @Override
+    public void flush() {
+        long target = claimed.get();
+        if (flushTarget < target) {
+            flushTarget = target;
+        }
+        while (flushed < target) {
+            if (!writer.isAlive()) {
+                throw new IllegalStateException("Event writer has stopped.");
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, FLUSH_WAIT_NANOS);
+        }
+    }
+
+    // Writes out everything published so far and stops the background writer; later events are written through
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void wakeWriter() {
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // Formats and writes one event on the caller's thread, for events published after the writer has stopped
+    private void writeThrough(WorkflowEventType type, Advertisement ad, AdStatus status) {
+        StringBuilder line = new StringBuilder(256);
+        type.format(line, ad, status);
+        line.append(System.lineSeparator());
+        synchronized (out) {
+            try {
+                out.append(line);
+                out.flush();
+            } catch (IOException e) {
+                System.err.println("Could not write workflow event: " + e.getMessage());
+            }
+        }
+    }
+
+    // Background loop: formats events in sequence order into one reused buffer
+    private void writeEvents() {
+        StringBuilder line = new StringBuilder(256);
+        char[] chars = new char[256];
+        String separator = System.lineSeparator();
+        long next = 0;
+        while (true) {
+            int slot = (int) next & mask;
+            if (published.get(slot) == next + 1) {
+                line.setLength(0);
+                types[slot].format(line, ads[slot], statuses[slot]);
+                line.append(separator);
+                ads[slot] = null;
+                statuses[slot] = null;
+                consumed = ++next;
+                if (chars.length < line.length()) {
+                    chars = new char[line.length() * 2];
+                }
+                line.getChars(0, line.length(), chars, 0);
+                try {
+                    out.write(chars, 0, line.length());
+                    if (next >= flushTarget && flushed < flushTarget) {
+                        flushOutput(next);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not write workflow event: " + e.getMessage());
+                }
+            } else {
+                try {
+                    if (flushed < next) {
+                        flushOutput(next);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not flush workflow events: " + e.getMessage());
+                }
+                if (closed && claimed.compareAndSet(next, next + SEALED)) {
+                    return; // Publishers that claim a sequence from now on see it sealed and write through
+                }
+                writerParked = true;
+                if (published.get(slot) != next + 1 && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private void flushOutput(long upTo) throws IOException {
+        out.flush();
+        flushed = upTo;
+    }
+}
+
+/**
+ * One workflow event as seen by ChangeFeed subscribers.
+ * Sequence numbers start at zero and increase by one per event, so a subscriber can resume after its last one.
+ */
+class ChangeEvent {
+    private final long sequence;
+    private final WorkflowEventType type;
+    private final Advertisement advertisement;
+    private final AdStatus status;
+
+    public ChangeEvent(long sequence, WorkflowEventType type, Advertisement advertisement, AdStatus status) {
+        this.sequence = sequence;
+        this.type = type;
+        this.advertisement = advertisement;
+        this.status = status;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public WorkflowEventType getType() {
+        return type;
+    }
+
+    public Advertisement getAdvertisement() {
+        return advertisement;
+    }
+
+    public String getAdvertID() {
+        return advertisement.getAdvertID();
+    }
+
+    // Status reported with the event, or the advertisement's status when the event was published
+    public AdStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " " + advertisement.getAdvertID() + " (" + status.getLabel() + ")";
+    }
+}
+
+/**
+ * Workflow event sink that also publishes every event to Flow subscribers, then passes it on to another sink.
+ * Events go into a power-of-two ring, which is both the replay window for resumed subscriptions and the bound on
+ * how far a subscriber may fall behind. Publishers never wait for subscribers: one that is more than a ring behind
+ * is sent onError and can resubscribe from its next sequence while that is still retained.
+ * Each subscriber is signalled on the executor, one signal at a time, and only as far as its requested demand.
+ */
+class ChangeFeed implements WorkflowEventSink, Flow.Publisher<ChangeEvent> {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private final WorkflowEventSink delegate;
+    private final Executor executor;
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<ChangeEvent> ring;
+    private final AtomicLong nextSequence = new AtomicLong(); // Next sequence handed to a publisher
+    private final Set<FeedSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    // Feed in front of the given sink, delivering on the common pool
+    public ChangeFeed(WorkflowEventSink delegate) {
+        this(delegate, DEFAULT_CAPACITY, ForkJoinPool.commonPool());
+    }
+
+    // Constructor taking the downstream sink, a power-of-two ring capacity and the executor for subscriber signals
+    public ChangeFeed(WorkflowEventSink delegate, int capacity, Executor executor) {
+        if (delegate == null || executor == null) {
+            throw new IllegalArgumentException("Sink and executor cannot be null.");
+        }
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two.");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    // Installs a feed in front of the current workflow event sink
+    public static ChangeFeed install() {
+        ChangeFeed feed = new ChangeFeed(WorkflowEvents.getSink());
+        WorkflowEvents.setSink(feed);
+        return feed;
+    }
+
+    @Override
+    public void publish(WorkflowEventType type, Advertisement ad, AdStatus status) {
+        delegate.publish(type, ad, status);
+        if (closed) {
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        ring.set((int) sequence & mask, new ChangeEvent(sequence, type, ad, status != null ? status : ad.getStatus()));
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    // Live subscription, starting with the next event published
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber) {
+        subscribe(subscriber, nextSequence.get());
+    }
+
+    // Resumes from the given sequence; the subscriber is sent onError if it is no longer retained
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber, long fromSequence) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null.");
+        }
+        FeedSubscription subscription = new FeedSubscription(subscriber, fromSequence);
+        if (fromSequence < 0) {
+            subscription.error = new IllegalArgumentException("Sequence cannot be negative: " + fromSequence);
+        }
+        subscriber.onSubscribe(subscription);
+        subscriptions.add(subscription);
+        executor.execute(subscription::drain);
+    }
+
+    // Sequence the next published event will get
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    // Oldest sequence a subscription can still resume from
+    public long getOldestSequence() {
+        return Math.max(0, nextSequence.get() - capacity);
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    // Stops accepting events; subscribers are completed once they have received everything already published
+    public void close() {
+        closed = true;
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Per-subscriber cursor and demand. The work counter makes sure only one thread signals the subscriber at a time.
+     */
+    private final class FeedSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ChangeEvent> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger(1); // Held until subscribe has called onSubscribe
+        private long cursor; // Next sequence to deliver; only touched while draining
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+
+        FeedSubscription(Flow.Subscriber<? super ChangeEvent> subscriber, long fromSequence) {
+            this.subscriber = subscriber;
+            this.cursor = fromSequence;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested demand must be positive: " + n);
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void signal() {
+            if (work.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        void drain() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            while (!cancelled) {
+                Throwable failure = error;
+                if (failure != null) {
+                    cancel();
+                    subscriber.onError(failure);
+                    return;
+                }
+                if (cursor >= nextSequence.get()) {
+                    if (closed && cursor >= nextSequence.get()) {
+                        cancel();
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                ChangeEvent event = ring.get((int) cursor & mask);
+                if (event == null || event.getSequence() < cursor) {
+                    return; // Claimed but not written yet; its publisher signals again once it is
+                }
+                if (event.getSequence() > cursor) {
+                    error = new IllegalStateException("Subscriber fell more than " + capacity
+                            + " events behind; sequence " + cursor + " is no longer retained.");
+                    continue;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                cursor++;
+                subscriber.onNext(event);
+            }
+        }
+    }
+}
+
+/**
+ * Workflow stages that are timed and counted by WorkflowMetrics.
+ */
+enum WorkflowStage {
+    CAPTURE, REVIEW, PAYMENT, APPROVAL, FORWARDING, ARCHIVING
+}
+
+/**
+ * Static holder for per-stage throughput counters and latency histograms.
+ * Stages record with System.nanoTime() start times when a call completes normally; recording never locks or allocates.
+ */
+final class WorkflowMetrics {
+    private static final StageMetrics[] STAGES = new StageMetrics[WorkflowStage.values().length];
+
+    static {
+        for (int i = 0; i < STAGES.length; i++) {
+            STAGES[i] = new StageMetrics();
+        }
+    }
+
+    private WorkflowMetrics() {
+    }
+
+    public static StageMetrics get(WorkflowStage stage) {
+        return STAGES[stage.ordinal()];
+    }
+
+    // Records one call to a stage that handled a single advertisement
+    public static void record(WorkflowStage stage, long startNanos) {
+        STAGES[stage.ordinal()].record(1, startNanos);
+    }
+
+    // Records one call to a stage that handled the given number of advertisements
+    public static void record(WorkflowStage stage, int advertisements, long startNanos) {
+        STAGES[stage.ordinal()].record(advertisements, startNanos);
+    }
+
+    // Current figures for every stage, in workflow order
+    public static Map<WorkflowStage, LatencySnapshot> snapshot() {
+        Map<WorkflowStage, LatencySnapshot> snapshots = new EnumMap<>(WorkflowStage.class);
+        for (WorkflowStage stage : WorkflowStage.values()) {
+            snapshots.put(stage, get(stage).snapshot());
+        }
+        return snapshots;
+    }
+
+    public static void reset() {
+        for (StageMetrics stage : STAGES) {
+            stage.reset();
+        }
+    }
+}
+
+/**
+ * Throughput counter and latency histogram for one stage. The counter counts advertisements handled;
+ * the histogram has one sample per call, so a batch call is a single sample.
+ */
+class StageMetrics {
+    private final StripedCounter advertisements = new StripedCounter();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public void record(int advertisementCount, long startNanos) {
+        latency.record(System.nanoTime() - startNanos);
+        advertisements.add(advertisementCount);
+    }
+
+    public long getAdvertisementCount() {
+        return advertisements.sum();
+    }
+
+    public LatencySnapshot snapshot() {
+        return latency.snapshot(advertisements.sum());
+    }
+
+    public void reset() {
+        advertisements.reset();
+        latency.reset();
+    }
+}
+
+/**
+ * Counter spread over one cache line per stripe, picked by thread ID, so concurrent writers rarely share a line.
+ */
+class StripedCounter {
+    static final int STRIPES = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+    private static final int PADDING = 8; // Longs per cache line
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void add(long delta) {
+        cells.getAndAdd(stripe() * PADDING, delta);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
+    }
+}
+
+/**
+ * Fixed-bucket log-linear histogram of nanosecond latencies. Each power of two is split into eight linear
+ * sub-buckets, so any recorded value is within 12.5% of its bucket's bounds, up to about 2.4 hours.
+ * Counts are striped by thread like StripedCounter.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 42; // Values of 2^43 ns or more go into the last bucket
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(StripedCounter.STRIPES * BUCKETS);
+
+    public void record(long nanos) {
+        counts.getAndIncrement(StripedCounter.stripe() * BUCKETS + bucketOf(nanos));
+    }
+
+    // Merges the stripes and reads off the percentiles; operationCount is carried into the snapshot
+    public LatencySnapshot snapshot(long operationCount) {
+        long[] merged = new long[BUCKETS];
+        long samples = 0;
+        for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long count = counts.get(stripe * BUCKETS + bucket);
+                merged[bucket] += count;
+                samples += count;
+            }
+        }
+        return new LatencySnapshot(operationCount, samples, percentile(merged, samples, 0.50),
+                                   percentile(merged, samples, 0.99), percentile(merged, samples, 0.999));
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    // Largest value that falls into the given bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static long percentile(long[] counts, long samples, double quantile) {
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * samples);
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+}
+
+/**
+ * Point-in-time figures for one stage. Percentiles are bucket upper bounds in nanoseconds.
+ */
+class LatencySnapshot {
+    private final long advertisementCount;
+    private final long callCount;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+
+    public LatencySnapshot(long advertisementCount, long callCount, long p50, long p99, long p999) {
+        this.advertisementCount = advertisementCount;
+        this.callCount = callCount;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+    }
+
+    public long getAdvertisementCount() {
+        return advertisementCount;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("advertisements=%d, calls=%d, p50=%.1fus, p99=%.1fus, p999=%.1fus",
+                             advertisementCount, callCount, p50 / 1000.0, p99 / 1000.0, p999 / 1000.0);
     }
 }
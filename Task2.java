@@ -1,13 +1,69 @@
 // Concrete Commands
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
 
 // Command Interface
 // This interface defines a common execute method for all commands.
+// Commands that only touch one advertisement name it, so the executor can run them alongside commands for other
+// advertisements; commands that name none (captures, archiving) act as barriers between everything around them.
 interface Command {
     void execute();
+
+    // The advertisement this command reads or changes, or null if it may touch any advertisement
+    default Advertisement getAdvertisement() {
+        return null;
+    }
+
+    // All advertisements this command reads or changes; empty if it may touch any advertisement
+    default Collection<Advertisement> getAdvertisements() {
+        Advertisement ad = getAdvertisement();
+        return ad == null ? List.of() : List.of(ad);
+    }
+}
+
+// Batchable Command Interface
+// Single-advertisement commands that the executor can merge with neighbouring commands of the same kind.
+interface BatchableCommand extends Command {
+    // Commands of the same class can be merged when their batch keys are the same object
+    Object getBatchKey();
+
+    // Creates one command that applies this command's operation to each advertisement in order
+    Command toBatch(List<Advertisement> advertisements);
+}
+
+// Batch Command Interface
+// Commands that apply one operation to a list of advertisements. The executor applies it to each advertisement on
+// its own, so an advertisement that fails only stops its own later commands, not those of the rest of the batch.
+interface BatchCommand extends Command {
+    // Applies this command's operation to one of its advertisements
+    void execute(Advertisement advertisement);
 }
 
 // Concrete Command: Capture Advertisement
@@ -36,11 +92,35 @@ class CaptureAdvertisementCommand implements Command {
     public void execute() {
         staff.captureAdvertisementDetails(advertiserName, contactInfo, content, placementPreferences, appearanceDate, size);
     }
+
+    public String getAdvertiserName() {
+        return advertiserName;
+    }
+
+    public String getContactInfo() {
+        return contactInfo;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getPlacementPreferences() {
+        return placementPreferences;
+    }
+
+    public LocalDate getAppearanceDate() {
+        return appearanceDate;
+    }
+
+    public String getSize() {
+        return size;
+    }
 }
 
 // Concrete Command: Review Advertisement
 // Encapsulates the logic to review the suitability of an advertisement.
-class ReviewAdvertisementCommand implements Command {
+class ReviewAdvertisementCommand implements BatchableCommand {
     private MarketingStaff staff;
     private Advertisement advertisement;
 
@@ -53,11 +133,26 @@ class ReviewAdvertisementCommand implements Command {
     public void execute() {
         staff.reviewAdvertisementSuitability(advertisement);
     }
+
+    @Override
+    public Advertisement getAdvertisement() {
+        return advertisement;
+    }
+
+    @Override
+    public Object getBatchKey() {
+        return staff;
+    }
+
+    @Override
+    public Command toBatch(List<Advertisement> advertisements) {
+        return new BatchReviewCommand(staff, advertisements);
+    }
 }
 
 // Concrete Command: Confirm Payment
 // Encapsulates the logic to confirm payment for an advertisement.
-class ConfirmPaymentCommand implements Command {
+class ConfirmPaymentCommand implements BatchableCommand {
     private PaymentProcessor paymentProcessor;
     private Advertisement advertisement;
 
@@ -70,11 +165,26 @@ class ConfirmPaymentCommand implements Command {
     public void execute() {
         paymentProcessor.confirmPayment(advertisement);
     }
+
+    @Override
+    public Advertisement getAdvertisement() {
+        return advertisement;
+    }
+
+    @Override
+    public Object getBatchKey() {
+        return paymentProcessor;
+    }
+
+    @Override
+    public Command toBatch(List<Advertisement> advertisements) {
+        return new BatchConfirmPaymentCommand(paymentProcessor, advertisements);
+    }
 }
 
 // Concrete Command: Approve Advertisement
 // Encapsulates the logic to approve an advertisement after review and payment confirmation.
-class ApproveAdvertisementCommand implements Command {
+class ApproveAdvertisementCommand implements BatchableCommand {
     private MarketingStaff staff;
     private Advertisement advertisement;
 
@@ -87,11 +197,26 @@ class ApproveAdvertisementCommand implements Command {
     public void execute() {
         staff.approveAdvertisement(advertisement);
     }
+
+    @Override
+    public Advertisement getAdvertisement() {
+        return advertisement;
+    }
+
+    @Override
+    public Object getBatchKey() {
+        return staff;
+    }
+
+    @Override
+    public Command toBatch(List<Advertisement> advertisements) {
+        return new BatchApproveCommand(staff, advertisements);
+    }
 }
 
 // Concrete Command: Forward Advertisement
 // Encapsulates the logic to forward an advertisement to the processing center.
-class ForwardAdvertisementCommand implements Command {
+class ForwardAdvertisementCommand implements BatchableCommand {
     private ProcessingCenter processingCenter;
     private Advertisement advertisement;
 
@@ -104,6 +229,135 @@ class ForwardAdvertisementCommand implements Command {
     public void execute() {
         processingCenter.receiveAdvertisement(advertisement);
     }
+
+    @Override
+    public Advertisement getAdvertisement() {
+        return advertisement;
+    }
+
+    @Override
+    public Object getBatchKey() {
+        return processingCenter;
+    }
+
+    @Override
+    public Command toBatch(List<Advertisement> advertisements) {
+        return new BatchForwardCommand(processingCenter, advertisements);
+    }
+}
+
+// Batch Command: Review Advertisements
+// Reviews a list of advertisements in one command; large lists have their content checked in parallel.
+class BatchReviewCommand implements BatchCommand {
+    private MarketingStaff staff;
+    private List<Advertisement> advertisements;
+
+    public BatchReviewCommand(MarketingStaff staff, List<Advertisement> advertisements) {
+        this.staff = staff;
+        this.advertisements = advertisements;
+    }
+
+    @Override
+    public void execute() {
+        staff.reviewAll(advertisements);
+    }
+
+    @Override
+    public void execute(Advertisement advertisement) {
+        staff.reviewAdvertisementSuitability(advertisement);
+    }
+
+    @Override
+    public Collection<Advertisement> getAdvertisements() {
+        return advertisements;
+    }
+}
+
+// Batch Command: Confirm Payments
+// Confirms payment for a list of advertisements in one command.
+class BatchConfirmPaymentCommand implements BatchCommand {
+    private PaymentProcessor paymentProcessor;
+    private List<Advertisement> advertisements;
+
+    public BatchConfirmPaymentCommand(PaymentProcessor paymentProcessor, List<Advertisement> advertisements) {
+        this.paymentProcessor = paymentProcessor;
+        this.advertisements = advertisements;
+    }
+
+    @Override
+    public void execute() {
+        for (Advertisement ad : advertisements) {
+            execute(ad);
+        }
+    }
+
+    @Override
+    public void execute(Advertisement advertisement) {
+        paymentProcessor.confirmPayment(advertisement);
+    }
+
+    @Override
+    public Collection<Advertisement> getAdvertisements() {
+        return advertisements;
+    }
+}
+
+// Batch Command: Approve Advertisements
+// Approves a list of advertisements in one command.
+class BatchApproveCommand implements BatchCommand {
+    private MarketingStaff staff;
+    private List<Advertisement> advertisements;
+
+    public BatchApproveCommand(MarketingStaff staff, List<Advertisement> advertisements) {
+        this.staff = staff;
+        this.advertisements = advertisements;
+    }
+
+    @Override
+    public void execute() {
+        for (Advertisement ad : advertisements) {
+            execute(ad);
+        }
+    }
+
+    @Override
+    public void execute(Advertisement advertisement) {
+        staff.approveAdvertisement(advertisement);
+    }
+
+    @Override
+    public Collection<Advertisement> getAdvertisements() {
+        return advertisements;
+    }
+}
+
+// Batch Command: Forward Advertisements
+// Forwards a list of advertisements to the processing center in one command.
+class BatchForwardCommand implements BatchCommand {
+    private ProcessingCenter processingCenter;
+    private List<Advertisement> advertisements;
+
+    public BatchForwardCommand(ProcessingCenter processingCenter, List<Advertisement> advertisements) {
+        this.processingCenter = processingCenter;
+        this.advertisements = advertisements;
+    }
+
+    @Override
+    public void execute() {
+        for (Advertisement ad : advertisements) {
+            execute(ad);
+        }
+    }
+
+    @Override
+    public void execute(Advertisement advertisement) {
+        processingCenter.receiveAdvertisement(advertisement);
+    }
+
+    @Override
+    public Collection<Advertisement> getAdvertisements() {
+        return advertisements;
+    }
 }
 
 // Concrete Command: Archive Advertisements
@@ -111,34 +365,331 @@ class ForwardAdvertisementCommand implements Command {
 class ArchiveAdvertisementCommand implements Command {
     private ArchiveManager archiveManager;
     private List<Advertisement> advertisements;
+    private LocalDate archiveDate; // Advertisements unused for six months before this date are archived
 
     public ArchiveAdvertisementCommand(ArchiveManager archiveManager, List<Advertisement> advertisements) {
+        this(archiveManager, advertisements, LocalDate.now());
+    }
+
+    public ArchiveAdvertisementCommand(ArchiveManager archiveManager, List<Advertisement> advertisements, LocalDate archiveDate) {
+        if (archiveDate == null) {
+            throw new IllegalArgumentException("Archive date cannot be null.");
+        }
         this.archiveManager = archiveManager;
         this.advertisements = advertisements;
+        this.archiveDate = archiveDate;
     }
 
     @Override
     public void execute() {
-        archiveManager.archiveUnusedAdvertisements(advertisements);
+        archiveManager.archiveUnusedAdvertisements(advertisements, archiveDate);
+    }
+
+    public LocalDate getArchiveDate() {
+        return archiveDate;
     }
 }
 
 // Invoker
-// This class manages a queue of commands and executes them sequentially.
-class CommandExecutor {
+// This class manages a queue of commands and executes them on a pool of worker threads.
+// Commands for the same advertisement run in queue order, commands for different advertisements run in parallel,
+// and a command that names no advertisement waits for everything queued before it and holds back everything after.
+// Before execution, long runs of single-advertisement commands of the same kind are merged into batch commands.
+class CommandExecutor implements AutoCloseable {
+    public static final int DEFAULT_COALESCING_THRESHOLD = 64;
+    private static final int CHUNKS_PER_WORKER = 4; // Batches a merged run is cut into, per worker
+
     private List<Command> commandQueue = new ArrayList<>();
+    private final Map<Command, List<Command>> explicitDependencies = new IdentityHashMap<>();
+    private final Set<Command> dependedOn = Collections.newSetFromMap(new IdentityHashMap<>()); // Never merged away
+    private final int parallelism;
+    private int coalescingThreshold = DEFAULT_COALESCING_THRESHOLD; // Shortest run that is merged into a batch
+    private CommandJournal journal; // When set, every batch is logged before it runs
+    private ExecutorService workers; // Created on first use
+    private volatile boolean closed;
+
+    public CommandExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CommandExecutor(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        this.parallelism = parallelism;
+    }
 
     // Adds a command to the queue
     public void addCommand(Command command) {
         getCommandQueue().add(command);
     }
 
-    // Executes all commands in the queue
+    // Adds a command that must also wait for the given commands, which have to be queued already
+    public void addCommand(Command command, Command... dependencies) {
+        for (Command dependency : dependencies) {
+            if (!getCommandQueue().contains(dependency)) {
+                throw new IllegalArgumentException("Dependencies must be queued before the commands that wait for them.");
+            }
+        }
+        getCommandQueue().add(command);
+        explicitDependencies.computeIfAbsent(command, k -> new ArrayList<>()).addAll(Arrays.asList(dependencies));
+        dependedOn.addAll(Arrays.asList(dependencies));
+    }
+
+    // Executes all commands in the queue and waits for them to finish. If a command fails, the commands that
+    // depend on it are skipped, the rest still run, and the first failure is rethrown once everything has settled.
+    // An advertisement that fails inside a batch only has its own later commands skipped.
     public void executeCommands() {
-        for (Command command : getCommandQueue()) {
-            command.execute();
+        if (closed) {
+            throw new IllegalStateException("Command executor is closed.");
+        }
+        List<Command> commands = coalesce(getCommandQueue());
+        if (journal != null) {
+            journal.append(commands, explicitDependencies); // Leaves the queue untouched if the batch cannot be logged
+        }
+        List<CommandNode> nodes = buildGraph(commands);
+        getCommandQueue().clear(); // Clear the queue before execution
+        explicitDependencies.clear();
+        dependedOn.clear();
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        // Collect the commands with no dependencies before starting any, since running commands release others
+        List<CommandNode> ready = new ArrayList<>();
+        for (CommandNode node : nodes) {
+            if (node.pending.get() == 0) {
+                ready.add(node);
+            }
+        }
+        CountDownLatch remaining = new CountDownLatch(nodes.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Set<Advertisement> failed = ConcurrentHashMap.newKeySet(); // Advertisements whose later commands are skipped
+        for (CommandNode node : ready) {
+            submit(node, remaining, failure, failed);
+        }
+        try {
+            remaining.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for commands to finish.", e);
+        }
+
+        Throwable thrown = failure.get();
+        if (thrown instanceof RuntimeException) {
+            throw (RuntimeException) thrown;
+        } else if (thrown instanceof Error) {
+            throw (Error) thrown;
+        }
+    }
+
+    // Merges each run of at least coalescingThreshold batchable commands with the same class and batch key into
+    // batch commands. Commands with explicit dependencies on either side are left alone. A run of commands for
+    // single advertisements is cut into several batches per worker, so that each batch moves on to the next
+    // command for its advertisements as soon as it is done, instead of the whole run waiting for its slowest part.
+    private List<Command> coalesce(List<Command> commands) {
+        List<Command> coalesced = new ArrayList<>();
+        int start = 0;
+        while (start < commands.size()) {
+            Command first = commands.get(start);
+            int end = start + 1;
+            if (isBatchable(first)) {
+                Object batchKey = ((BatchableCommand) first).getBatchKey();
+                while (end < commands.size() && isBatchable(commands.get(end))
+                        && commands.get(end).getClass() == first.getClass()
+                        && ((BatchableCommand) commands.get(end)).getBatchKey() == batchKey) {
+                    end++;
+                }
+            }
+            if (end - start >= coalescingThreshold) {
+                int batchSize = end - start;
+                if (first.getAdvertisement() != null) {
+                    int batches = parallelism * CHUNKS_PER_WORKER;
+                    batchSize = (end - start + batches - 1) / batches;
+                }
+                for (int from = start; from < end; from += batchSize) {
+                    int to = Math.min(end, from + batchSize);
+                    List<Advertisement> advertisements = new ArrayList<>(to - from);
+                    for (int i = from; i < to; i++) {
+                        advertisements.add(commands.get(i).getAdvertisement());
+                    }
+                    coalesced.add(((BatchableCommand) first).toBatch(advertisements));
+                }
+            } else {
+                coalesced.addAll(commands.subList(start, end));
+            }
+            start = end;
+        }
+        return coalesced;
+    }
+
+    private boolean isBatchable(Command command) {
+        return command instanceof BatchableCommand && !explicitDependencies.containsKey(command) && !dependedOn.contains(command);
+    }
+
+    // Links each command to the commands it has to wait for
+    private List<CommandNode> buildGraph(List<Command> commands) {
+        List<CommandNode> nodes = new ArrayList<>(commands.size());
+        Map<Command, CommandNode> nodesByCommand = new IdentityHashMap<>();
+        Map<Advertisement, CommandNode> latestByAdvertisement = new IdentityHashMap<>(); // Since the last barrier
+        CommandNode lastBarrier = null;
+        for (Command command : commands) {
+            CommandNode node = new CommandNode(command);
+            Collection<Advertisement> advertisements = command.getAdvertisements();
+            if (advertisements.isEmpty()) {
+                for (CommandNode latest : latestByAdvertisement.values()) {
+                    latest.addDependent(node);
+                }
+                if (latestByAdvertisement.isEmpty() && lastBarrier != null) {
+                    lastBarrier.addDependent(node);
+                }
+                latestByAdvertisement.clear();
+                lastBarrier = node;
+            } else {
+                for (Advertisement ad : advertisements) {
+                    CommandNode previous = latestByAdvertisement.put(ad, node);
+                    if (previous == node) {
+                        continue; // A batch can carry the same advertisement more than once
+                    }
+                    if (previous != null) {
+                        previous.addDependent(node);
+                    } else if (lastBarrier != null) {
+                        lastBarrier.addDependent(node);
+                    }
+                }
+            }
+            for (Command dependency : explicitDependencies.getOrDefault(command, List.of())) {
+                CommandNode dependencyNode = nodesByCommand.get(dependency);
+                if (dependencyNode != null) {
+                    dependencyNode.addDependent(node);
+                }
+            }
+            nodesByCommand.put(command, node);
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    private void submit(CommandNode node, CountDownLatch remaining, AtomicReference<Throwable> failure, Set<Advertisement> failed) {
+        getWorkers().execute(() -> run(node, remaining, failure, failed));
+    }
+
+    // Runs one command, then releases the commands waiting for it. A command whose advertisement failed or was
+    // skipped earlier is skipped as well, and so is every advertisement of a batch that did.
+    private void run(CommandNode node, CountDownLatch remaining, AtomicReference<Throwable> failure, Set<Advertisement> failed) {
+        Collection<Advertisement> advertisements = node.command.getAdvertisements();
+        boolean succeeded = false;
+        boolean complete = false; // Every advertisement of the command went through
+        if (node.skipped) {
+            failed.addAll(advertisements);
+        } else if (node.command instanceof BatchCommand) {
+            long start = System.nanoTime();
+            int executed = 0;
+            complete = true;
+            for (Advertisement ad : advertisements) {
+                if (failed.contains(ad)) {
+                    complete = false;
+                    continue;
+                }
+                try {
+                    ((BatchCommand) node.command).execute(ad);
+                    executed++;
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    failed.add(ad);
+                    complete = false;
+                }
+            }
+            if (executed > 0) {
+                CommandMetrics.get(node.command.getClass()).record(executed, start);
+            }
+            succeeded = true; // Its failed advertisements are in failed, which the commands for them check
+        } else if (!Collections.disjoint(advertisements, failed)) {
+            failed.addAll(advertisements);
+        } else {
+            try {
+                long start = System.nanoTime();
+                node.command.execute();
+                CommandMetrics.get(node.command.getClass()).record(Math.max(1, advertisements.size()), start);
+                succeeded = true;
+                complete = true;
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+                failed.addAll(advertisements);
+            }
+        }
+        for (CommandNode dependent : node.dependents) {
+            // Barriers wait for everything before them, so they are skipped if any advertisement fell through
+            if (!succeeded || (!complete && dependent.command.getAdvertisements().isEmpty())) {
+                dependent.skipped = true;
+            }
+            if (dependent.pending.decrementAndGet() == 0) {
+                submit(dependent, remaining, failure, failed);
+            }
+        }
+        remaining.countDown();
+    }
+
+    public CommandJournal getJournal() {
+        return journal;
+    }
+
+    // Logs every batch of commands to the given journal before executing it; null turns journaling off
+    public void setJournal(CommandJournal journal) {
+        this.journal = journal;
+    }
+
+    public int getCoalescingThreshold() {
+        return coalescingThreshold;
+    }
+
+    // Sets the shortest run of same-kind commands that is merged into a batch; Integer.MAX_VALUE turns merging off
+    public void setCoalescingThreshold(int coalescingThreshold) {
+        if (coalescingThreshold < 2) {
+            throw new IllegalArgumentException("Coalescing threshold must be at least 2.");
+        }
+        this.coalescingThreshold = coalescingThreshold;
+    }
+
+    // Stops the worker threads once the commands already running have finished; later executions are rejected
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    private synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "command-executor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return workers;
+    }
+
+    // A queued command with the commands that wait for it
+    private static final class CommandNode {
+        final Command command;
+        final List<CommandNode> dependents = new ArrayList<>();
+        final AtomicInteger pending = new AtomicInteger(); // Dependencies that have not finished yet
+        boolean skipped; // Set when a dependency failed or was skipped; published by the decrement of pending
+
+        CommandNode(Command command) {
+            this.command = command;
+        }
+
+        // Links are added while the dependent is being built, so a repeated link is always the last one added
+        void addDependent(CommandNode dependent) {
+            if (!dependents.isEmpty() && dependents.get(dependents.size() - 1) == dependent) {
+                return;
+            }
+            dependents.add(dependent);
+            dependent.pending.incrementAndGet();
         }
-        getCommandQueue().clear(); // Clear the queue after execution
     }
 
 	public List<Command> getCommandQueue() {
@@ -150,6 +701,405 @@ class CommandExecutor {
 	}
 }
 
+// Command Metrics
+// Keeps a throughput counter and latency histogram per command class, recorded by CommandExecutor for every
+// command that completes. The lookup is a ClassValue, so recording stays free of locks and allocation.
+final class CommandMetrics {
+    private static final Map<String, StageMetrics> BY_NAME = new ConcurrentHashMap<>();
+    private static final ClassValue<StageMetrics> BY_CLASS = new ClassValue<StageMetrics>() {
+        @Override
+        protected StageMetrics computeValue(Class<?> type) {
+            return BY_NAME.computeIfAbsent(type.getName(), k -> new StageMetrics());
+        }
+    };
+
+    private CommandMetrics() {
+    }
+
+    public static StageMetrics get(Class<? extends Command> type) {
+        return BY_CLASS.get(type);
+    }
+
+    // Current figures for every command class that has run, by class name
+    public static Map<String, LatencySnapshot> snapshot() {
+        Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        BY_NAME.forEach((name, metrics) -> snapshots.put(name, metrics.snapshot()));
+        return snapshots;
+    }
+
+    public static void reset() {
+        for (StageMetrics metrics : BY_NAME.values()) {
+            metrics.reset();
+        }
+    }
+}
+
+// Write-Ahead Journal
+// Appends executed commands to a local log file before they run, so the workflow state can be rebuilt after a crash.
+// Each call to append() writes the whole batch and forces it to disk once. Records are
+// [int payload length][int CRC32][payload], where the payload is a command type code followed by its fields;
+// advertisements are stored by ID. Each batch starts with a record of its size and of which commands wait for
+// which, so replay can skip what the first run skipped. A batch torn at the end of the file is dropped when it is
+// replayed; a corrupt record anywhere else stops the replay and leaves the file as it is.
+class CommandJournal implements Closeable {
+    private static final byte CAPTURE = 1;
+    private static final byte REVIEW = 2;
+    private static final byte CONFIRM_PAYMENT = 3;
+    private static final byte APPROVE = 4;
+    private static final byte FORWARD = 5;
+    private static final byte ARCHIVE = 6;
+    private static final byte BATCH_REVIEW = 7;
+    private static final byte BATCH_CONFIRM_PAYMENT = 8;
+    private static final byte BATCH_APPROVE = 9;
+    private static final byte BATCH_FORWARD = 10;
+    private static final byte BATCH = 11; // Starts each appended batch
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final FileChannel channel;
+
+    private CommandJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // Opens (or creates) a journal file; call replay() before appending to recover what it already holds
+    public static CommandJournal open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new CommandJournal(channel);
+    }
+
+    // Writes a batch of commands and forces it to disk with a single fsync
+    public synchronized void append(List<Command> commands) {
+        append(commands, Map.of());
+    }
+
+    // Writes a batch of commands along with the queued commands each one waits for, and forces it to disk with a
+    // single fsync
+    public synchronized void append(List<Command> commands, Map<Command, List<Command>> dependencies) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        Map<Command, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            indexes.put(commands.get(i), i);
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        try {
+            DataOutputStream recordOut = new DataOutputStream(records);
+            List<Integer> links = new ArrayList<>(); // Pairs of command index and dependency index
+            for (int i = 0; i < commands.size(); i++) {
+                for (Command dependency : dependencies.getOrDefault(commands.get(i), List.of())) {
+                    Integer index = indexes.get(dependency);
+                    if (index != null) {
+                        links.add(i);
+                        links.add(index);
+                    }
+                }
+            }
+            DataOutputStream batchOut = new DataOutputStream(payload);
+            batchOut.writeByte(BATCH);
+            batchOut.writeInt(commands.size());
+            batchOut.writeInt(links.size() / 2);
+            for (int link : links) {
+                batchOut.writeInt(link);
+            }
+            writeRecord(recordOut, payload, crc);
+            for (Command command : commands) {
+                payload.reset();
+                encode(command, new DataOutputStream(payload));
+                writeRecord(recordOut, payload, crc);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to the command journal.", e);
+        }
+    }
+
+    // Re-executes every logged batch in order against the given components, which should start out empty.
+    // Each batch runs on a single-threaded executor with the dependencies it was logged with, so a command that
+    // fails fails again and the commands that were skipped because of it are skipped again. Returns the number
+    // of commands read. Only a torn tail is truncated: a batch cut short by the end of the file, a last record
+    // that fails its checksum, or a run of zeros. Any other bad record throws IOException without changing the
+    // file, once the batches before it have been replayed.
+    public synchronized int replay(MarketingStaff staff, PaymentProcessor paymentProcessor,
+                                   ProcessingCenter processingCenter, ArchiveManager archiveManager) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        int replayed = 0;
+        try (CommandExecutor executor = new CommandExecutor(1)) {
+            executor.setCoalescingThreshold(Integer.MAX_VALUE); // Batches were already merged before they were logged
+            while (position < size) {
+                long batchStart = position;
+                ByteBuffer record = readRecord(position, size);
+                if (record == null) {
+                    break;
+                }
+                position += HEADER_SIZE + record.capacity();
+                List<ByteBuffer> records = new ArrayList<>();
+                int[] links = new int[0];
+                if (record.get(0) == BATCH) {
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()));
+                    in.readByte();
+                    int count = in.readInt();
+                    links = new int[2 * in.readInt()];
+                    for (int i = 0; i < links.length; i++) {
+                        links[i] = in.readInt();
+                    }
+                    while (records.size() < count && (record = readRecord(position, size)) != null) {
+                        records.add(record);
+                        position += HEADER_SIZE + record.capacity();
+                    }
+                    if (records.size() < count) {
+                        position = batchStart; // Torn while it was being logged, so it never ran
+                        break;
+                    }
+                } else {
+                    records.add(record); // A command logged without a batch record
+                }
+
+                List<Command> commands = new ArrayList<>(records.size());
+                for (ByteBuffer payload : records) {
+                    commands.add(decode(new DataInputStream(new ByteArrayInputStream(payload.array())),
+                                        staff, paymentProcessor, processingCenter, archiveManager));
+                }
+                List<List<Command>> dependencies = new ArrayList<>(commands.size());
+                for (int i = 0; i < commands.size(); i++) {
+                    dependencies.add(new ArrayList<>());
+                }
+                for (int i = 0; i < links.length; i += 2) {
+                    if (links[i + 1] < 0 || links[i + 1] >= links[i] || links[i] >= commands.size()) {
+                        throw new IOException("Command journal has an invalid dependency in the batch at offset " + batchStart + ".");
+                    }
+                    dependencies.get(links[i]).add(commands.get(links[i + 1]));
+                }
+                for (int i = 0; i < commands.size(); i++) {
+                    executor.addCommand(commands.get(i), dependencies.get(i).toArray(new Command[0]));
+                }
+                try {
+                    executor.executeCommands();
+                } catch (RuntimeException e) {
+                    // A command failed the first time too, and the same commands were skipped because of it
+                }
+                replayed += commands.size();
+            }
+        }
+        channel.truncate(position); // Drop a torn batch left by a crash
+        channel.position(position);
+        return replayed;
+    }
+
+    // Reads the record at the given position and returns its payload, or null if the file ends in a torn record
+    // there. Throws IOException for a corrupt record that more data follows.
+    private ByteBuffer readRecord(long position, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (readFully(header, position) < HEADER_SIZE) {
+            return null;
+        }
+        int length = header.getInt(0);
+        long end = position + HEADER_SIZE + length;
+        if (length <= 0) {
+            if (length == 0 && isZeroFrom(position, size)) {
+                return null;
+            }
+            throw new IOException("Command journal has a record of invalid length at offset " + position + ".");
+        }
+        if (end > size) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, position + HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != header.getInt(Integer.BYTES)) {
+            if (end == size) {
+                return null;
+            }
+            throw new IOException("Command journal has a corrupt record at offset " + position + ".");
+        }
+        return payload;
+    }
+
+    // Whether every byte from position to the end of the file is zero, as left by a write that never landed
+    private boolean isZeroFrom(long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    // Empties the journal, once its state has been saved elsewhere (for example in a snapshot)
+    public synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static void encode(Command command, DataOutputStream out) throws IOException {
+        if (command.getClass() == CaptureAdvertisementCommand.class) {
+            CaptureAdvertisementCommand capture = (CaptureAdvertisementCommand) command;
+            out.writeByte(CAPTURE);
+            writeString(out, capture.getAdvertiserName());
+            writeString(out, capture.getContactInfo());
+            writeString(out, capture.getContent());
+            writeString(out, capture.getPlacementPreferences());
+            out.writeLong(capture.getAppearanceDate() == null ? NO_DATE : capture.getAppearanceDate().toEpochDay());
+            writeString(out, capture.getSize());
+        } else if (command.getClass() == ReviewAdvertisementCommand.class) {
+            writeSingle(out, REVIEW, command);
+        } else if (command.getClass() == ConfirmPaymentCommand.class) {
+            writeSingle(out, CONFIRM_PAYMENT, command);
+        } else if (command.getClass() == ApproveAdvertisementCommand.class) {
+            writeSingle(out, APPROVE, command);
+        } else if (command.getClass() == ForwardAdvertisementCommand.class) {
+            writeSingle(out, FORWARD, command);
+        } else if (command.getClass() == ArchiveAdvertisementCommand.class) {
+            out.writeByte(ARCHIVE);
+            out.writeLong(((ArchiveAdvertisementCommand) command).getArchiveDate().toEpochDay());
+        } else if (command.getClass() == BatchReviewCommand.class) {
+            writeBatch(out, BATCH_REVIEW, command);
+        } else if (command.getClass() == BatchConfirmPaymentCommand.class) {
+            writeBatch(out, BATCH_CONFIRM_PAYMENT, command);
+        } else if (command.getClass() == BatchApproveCommand.class) {
+            writeBatch(out, BATCH_APPROVE, command);
+        } else if (command.getClass() == BatchForwardCommand.class) {
+            writeBatch(out, BATCH_FORWARD, command);
+        } else {
+            throw new IllegalArgumentException("Cannot journal command of type " + command.getClass().getName() + ".");
+        }
+    }
+
+    private static Command decode(DataInputStream in, MarketingStaff staff, PaymentProcessor paymentProcessor,
+                                  ProcessingCenter processingCenter, ArchiveManager archiveManager) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case CAPTURE:
+                String advertiserName = readString(in);
+                String contactInfo = readString(in);
+                String content = readString(in);
+                String placementPreferences = readString(in);
+                long epochDay = in.readLong();
+                String size = readString(in);
+                return new CaptureAdvertisementCommand(staff, advertiserName, contactInfo, content, placementPreferences,
+                                                       epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay), size);
+            case REVIEW:
+                return new ReviewAdvertisementCommand(staff, readAdvertisement(in, staff));
+            case CONFIRM_PAYMENT:
+                return new ConfirmPaymentCommand(paymentProcessor, readAdvertisement(in, staff));
+            case APPROVE:
+                return new ApproveAdvertisementCommand(staff, readAdvertisement(in, staff));
+            case FORWARD:
+                return new ForwardAdvertisementCommand(processingCenter, readAdvertisement(in, staff));
+            case ARCHIVE:
+                return new ArchiveAdvertisementCommand(archiveManager, staff.advertisements, LocalDate.ofEpochDay(in.readLong()));
+            case BATCH_REVIEW:
+                return new BatchReviewCommand(staff, readAdvertisements(in, staff));
+            case BATCH_CONFIRM_PAYMENT:
+                return new BatchConfirmPaymentCommand(paymentProcessor, readAdvertisements(in, staff));
+            case BATCH_APPROVE:
+                return new BatchApproveCommand(staff, readAdvertisements(in, staff));
+            case BATCH_FORWARD:
+                return new BatchForwardCommand(processingCenter, readAdvertisements(in, staff));
+            default:
+                throw new IOException("Unknown command type in journal: " + type);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, ByteArrayOutputStream payload, CRC32 crc) throws IOException {
+        crc.reset();
+        crc.update(payload.toByteArray());
+        out.writeInt(payload.size());
+        out.writeInt((int) crc.getValue());
+        payload.writeTo(out);
+    }
+
+    private static void writeSingle(DataOutputStream out, byte type, Command command) throws IOException {
+        out.writeByte(type);
+        writeString(out, command.getAdvertisement() == null ? null : command.getAdvertisement().getAdvertID());
+    }
+
+    private static void writeBatch(DataOutputStream out, byte type, Command command) throws IOException {
+        out.writeByte(type);
+        out.writeInt(command.getAdvertisements().size());
+        for (Advertisement ad : command.getAdvertisements()) {
+            writeString(out, ad == null ? null : ad.getAdvertID());
+        }
+    }
+
+    private static Advertisement readAdvertisement(DataInputStream in, MarketingStaff staff) throws IOException {
+        String advertID = readString(in);
+        return advertID == null ? null : staff.findAdvertisement(advertID);
+    }
+
+    private static List<Advertisement> readAdvertisements(DataInputStream in, MarketingStaff staff) throws IOException {
+        int count = in.readInt();
+        List<Advertisement> advertisements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            advertisements.add(readAdvertisement(in, staff));
+        }
+        return advertisements;
+    }
+
+    // Strings are an int byte count (-1 for null) followed by UTF-8 bytes
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
 // Client Code (Main Class)
 public class Task2 {
     public static void main(String[] args) {
@@ -161,7 +1111,7 @@ public class Task2 {
         CommandExecutor executor = new CommandExecutor();
 
         // Step 1: Capture advertisements using Command
-        System.out.println("=== Step 1: Capture Advertisement Details ===");
+        printHeading("=== Step 1: Capture Advertisement Details ===");
         executor.addCommand(new CaptureAdvertisementCommand(staff, "Advertiser A", "contact@a.com", "This is a valid ad.", "Front Page", LocalDate.of(2025, 1, 15), "Large"));
         executor.addCommand(new CaptureAdvertisementCommand(staff, "Advertiser B", "contact@b.com", "This ad is inappropriate.", "Back Page", LocalDate.of(2025, 2, 10), "Medium"));
         executor.addCommand(new CaptureAdvertisementCommand(staff, "Advertiser C", "contact@c.com", "Another valid ad.", "Middle Page", LocalDate.of(2025, 3, 5), "Small"));
@@ -170,49 +1120,51 @@ public class Task2 {
         executor.addCommand(new CaptureAdvertisementCommand(staff, "Advertiser F", "contact@f.com", "Old ad for archival.", "Middle Page", LocalDate.of(2023, 1, 15), "Small")); // Should be archived
         executor.executeCommands(); // Execute all capture commands
 
-        // Step 2: Review advertisements
-        System.out.println("\n=== Step 2: Review Advertisement Suitability ===");
+        // Steps 2-5: Review, confirm payment, approve and forward. Each advertisement's commands run in order,
+        // but an advertisement can move on to approval while another is still in review.
+        printHeading("\n=== Steps 2-5: Review, Payment, Approval and Forwarding ===");
         for (Advertisement ad : staff.advertisements) {
             executor.addCommand(new ReviewAdvertisementCommand(staff, ad));
         }
-        executor.executeCommands(); // Execute all review commands
-
-        // Step 3: Confirm payment for selected advertisements
-        System.out.println("\n=== Step 3: Confirm Payment ===");
         executor.addCommand(new ConfirmPaymentCommand(paymentProcessor, staff.advertisements.get(0))); // Payment for A
         executor.addCommand(new ConfirmPaymentCommand(paymentProcessor, staff.advertisements.get(2))); // Payment for C
         executor.addCommand(new ConfirmPaymentCommand(paymentProcessor, staff.advertisements.get(4))); // Payment for E
-        executor.executeCommands(); // Execute all payment confirmation commands
-
-        // Step 4: Approve advertisements
-        System.out.println("\n=== Step 4: Approve Advertisements ===");
         for (Advertisement ad : staff.advertisements) {
             executor.addCommand(new ApproveAdvertisementCommand(staff, ad));
         }
-        executor.executeCommands(); // Execute all approval commands
-
-        // Step 5: Forward advertisements to processing center
-        System.out.println("\n=== Step 5: Forward Advertisements ===");
         for (Advertisement ad : staff.advertisements) {
             executor.addCommand(new ForwardAdvertisementCommand(processingCenter, ad));
         }
-        executor.executeCommands(); // Execute all forwarding commands
+        executor.executeCommands(); // Execute the whole pipeline
 
         // Step 6: Archive advertisements
-        System.out.println("\n=== Step 6: Archive Unused Advertisements ===");
+        printHeading("\n=== Step 6: Archive Unused Advertisements ===");
         executor.addCommand(new ArchiveAdvertisementCommand(archiveManager, staff.advertisements));
         executor.executeCommands(); // Execute the archive command
 
         // Display archived advertisements
-        System.out.println("\nArchived Advertisements:");
-        for (Advertisement archivedAd : archiveManager.getArchivedAdvertisements()) {
-            System.out.println(archivedAd.getDetails());
-        }
+        printHeading("\nArchived Advertisements:");
+        printDetails(archiveManager.getArchivedAdvertisements());
 
         // Step 7: View current advertisements
-        System.out.println("\n=== Step 7: View Current Advertisements ===");
-        for (Advertisement ad : staff.advertisements) {
-            System.out.println(ad.getDetails());
+        printHeading("\n=== Step 7: View Current Advertisements ===");
+        printDetails(staff.advertisements);
+        executor.close();
+        archiveManager.close();
+    }
+
+    // Prints a step heading after any workflow events still queued for output
+    private static void printHeading(String heading) {
+        WorkflowEvents.flush();
+        System.out.println(heading);
+    }
+
+    // Prints one details line per advertisement
+    private static void printDetails(Iterable<Advertisement> ads) {
+        try {
+            DetailsRenderer.render(ads, System.out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not print advertisement details.", e); // PrintStream does not throw
         }
     }
 }
@@ -1,6 +1,15 @@
 import java.time.LocalDate;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
 * Main class containing all functionalities and a simulation of the workflow.
@@ -72,27 +81,39 @@ public class Task3 {
 class Advertisement {
    private static List<Advertisement> advertisementList = new ArrayList<>(); // Static list to hold all advertisements
 
-   private String advertID;
+   private final long advertNumber; // Numeric part of the ID, or -1 when the ID is not in the A001 format
+   private String advertID; // Rendered lazily from advertNumber
    private String advertiserName;
    private String contactInfo;
    private String content;
    private String placementPreferences;
    private LocalDate appearanceDate;
-   private String reviewStatus;
+   private AdStatus status;
    private boolean isPaid;
    private String size;
    private boolean isProcessed; // Tracks if the advertisement has been processed
    private boolean isArchived;
+   private AdvertisementRepository repository; // Repository indexing this advertisement, if any
 
    // Constructor to initialize an advertisement
    public Advertisement(String advertID, String advertiserName, String contactInfo, String content, String placementPreferences, LocalDate appearanceDate, String size) {
+       this(parseAdvertNumber(advertID), advertID, advertiserName, contactInfo, content, placementPreferences, appearanceDate, size);
+   }
+
+   // Constructor for advertisements whose ID was allocated numerically; the string form is rendered on first use
+   public Advertisement(long advertNumber, String advertiserName, String contactInfo, String content, String placementPreferences, LocalDate appearanceDate, String size) {
+       this(advertNumber, null, advertiserName, contactInfo, content, placementPreferences, appearanceDate, size);
+   }
+
+   private Advertisement(long advertNumber, String advertID, String advertiserName, String contactInfo, String content, String placementPreferences, LocalDate appearanceDate, String size) {
+       this.advertNumber = advertNumber;
        this.advertID = advertID;
        this.advertiserName = advertiserName;
        this.contactInfo = contactInfo;
        this.content = content;
        this.placementPreferences = placementPreferences;
        this.appearanceDate = appearanceDate;
-       this.reviewStatus = "Pending";
+       this.status = AdStatus.PENDING;
        this.isPaid = false;
        this.size = size;
        this.isProcessed = false;
@@ -101,19 +122,80 @@ class Advertisement {
 
    // Getters and setters for advertisement fields
    public String getAdvertID() {
+       if (advertID == null) {
+           advertID = formatAdvertID(advertNumber);
+       }
        return advertID;
    }
 
+   public long getAdvertNumber() {
+       return advertNumber;
+   }
+
+   // Renders an advertisement number in the A001 format
+   public static String formatAdvertID(long advertNumber) {
+       String digits = Long.toString(advertNumber);
+       switch (digits.length()) {
+           case 1:
+               return "A00" + digits;
+           case 2:
+               return "A0" + digits;
+           default:
+               return "A" + digits;
+       }
+   }
+
+   // Parses an ID in the A001 format back to its number, or returns -1 if the ID is in any other format
+   public static long parseAdvertNumber(String advertID) {
+       if (advertID == null || advertID.length() < 4 || advertID.length() > 19 || advertID.charAt(0) != 'A') {
+           return -1;
+       }
+       long advertNumber = 0;
+       for (int i = 1; i < advertID.length(); i++) {
+           char c = advertID.charAt(i);
+           if (c < '0' || c > '9') {
+               return -1;
+           }
+           advertNumber = advertNumber * 10 + (c - '0');
+       }
+       return formatAdvertID(advertNumber).equals(advertID) ? advertNumber : -1;
+   }
+
+   public String getAdvertiserName() {
+       return advertiserName;
+   }
+
    public String getContent() {
        return content;
    }
 
    public String getReviewStatus() {
-       return reviewStatus;
+       return status.getLabel();
    }
 
+   // Updates the review status from its label, e.g. "Approved"
    public void setReviewStatus(String reviewStatus) {
-       this.reviewStatus = reviewStatus;
+       AdStatus newStatus = AdStatus.fromLabel(reviewStatus);
+       if (newStatus == null) {
+           throw new IllegalArgumentException("Unknown review status: " + reviewStatus);
+       }
+       setStatus(newStatus);
+   }
+
+   public AdStatus getStatus() {
+       return status;
+   }
+
+   // Moves the advertisement to a new lifecycle status and keeps the owning repository's status index in sync
+   public void setStatus(AdStatus newStatus) {
+       AdStatus previousStatus = status;
+       if (!previousStatus.canTransitionTo(newStatus)) {
+           throw new IllegalStateException("Advertisement " + getAdvertID() + " cannot move from " + previousStatus + " to " + newStatus + ".");
+       }
+       status = newStatus;
+       if (repository != null && previousStatus != newStatus) {
+           repository.statusChanged(this, previousStatus, newStatus);
+       }
    }
 
    public boolean isPaid() {
@@ -134,7 +216,7 @@ class Advertisement {
 
    // Returns the details of the advertisement as a formatted string
    public String getDetails() {
-       return "ID: " + advertID + ", Advertiser: " + advertiserName + ", Content: " + content + ", Size: " + size + ", Status: " + reviewStatus;
+       return "ID: " + getAdvertID() + ", Advertiser: " + advertiserName + ", Content: " + content + ", Size: " + size + ", Status: " + status.getLabel();
    }
    
    // Records the advertisement into the static list
@@ -164,21 +246,39 @@ class Advertisement {
 	
 	 // OCL Methods
    public void validateDetails() {
-       if (advertiserName == null || advertiserName.isEmpty() || 
-           contactInfo == null || contactInfo.isEmpty() || 
-           content == null || content.isEmpty()) {
+       requireDetails(advertiserName, contactInfo, content);
+   }
+
+   // Validates submitted details before an advertisement (and its ID) is created
+   public static void requireDetails(String advertiserName, String contactInfo, String content) {
+       if (checkDetails(advertiserName, contactInfo, content) != null) {
            throw new IllegalArgumentException("Advertisement details must be complete before submission.");
        }
    }
 
+   // Returns the first missing detail, or null if the details are complete
+   public static CaptureError checkDetails(String advertiserName, String contactInfo, String content) {
+       if (advertiserName == null || advertiserName.isEmpty()) {
+           return CaptureError.MISSING_ADVERTISER_NAME;
+       }
+       if (contactInfo == null || contactInfo.isEmpty()) {
+           return CaptureError.MISSING_CONTACT_INFO;
+       }
+       if (content == null || content.isEmpty()) {
+           return CaptureError.MISSING_CONTENT;
+       }
+       return null;
+   }
+
    public void archiveIfUnused() {
        if (appearanceDate.isBefore(LocalDate.now().minusMonths(6))) {
            setArchived(true);
+           setStatus(AdStatus.ARCHIVED);
        }
    }
 
    public boolean requiresSuitability() {
-       return reviewStatus.equals("Pending Suitability Assessment");
+       return status == AdStatus.PENDING;
    }
 
    public void ensurePaidBeforePublication() {
@@ -186,6 +286,211 @@ class Advertisement {
            throw new IllegalStateException("Payment must be confirmed before publication.");
        }
    }
+
+   AdvertisementRepository getRepository() {
+       return repository;
+   }
+
+   void setRepository(AdvertisementRepository repository) {
+       this.repository = repository;
+   }
+}
+
+/**
+* Lifecycle statuses of an advertisement, with the transitions allowed between them precomputed as bit masks.
+* A review decision may be revised until the advertisement is processed or archived; archiving is final.
+*/
+enum AdStatus {
+   PENDING("Pending"),
+   APPROVED("Approved"),
+   REJECTED("Rejected"),
+   NOT_PAID("Not Paid"),
+   PROCESSED("Processed"),
+   ARCHIVED("Archived");
+
+   private static final int[] ALLOWED_TRANSITIONS = new int[values().length];
+
+   static {
+       allow(PENDING, APPROVED, REJECTED, ARCHIVED);
+       allow(APPROVED, REJECTED, NOT_PAID, PROCESSED, ARCHIVED);
+       allow(REJECTED, APPROVED, ARCHIVED);
+       allow(NOT_PAID, APPROVED, REJECTED, ARCHIVED);
+       allow(PROCESSED, ARCHIVED);
+   }
+
+   private final String label;
+
+   AdStatus(String label) {
+       this.label = label;
+   }
+
+   private static void allow(AdStatus from, AdStatus... targets) {
+       for (AdStatus target : targets) {
+           ALLOWED_TRANSITIONS[from.ordinal()] |= 1 << target.ordinal();
+       }
+   }
+
+   // Label shown to users, e.g. "Not Paid"
+   public String getLabel() {
+       return label;
+   }
+
+   // Staying in the same status is always allowed
+   public boolean canTransitionTo(AdStatus next) {
+       return this == next || (ALLOWED_TRANSITIONS[ordinal()] & (1 << next.ordinal())) != 0;
+   }
+
+   // Looks up a status by its label, or returns null if there is none
+   public static AdStatus fromLabel(String label) {
+       if (label == null) {
+           return null;
+       }
+       for (AdStatus status : values()) {
+           if (status.label.equals(label)) {
+               return status;
+           }
+       }
+       return null;
+   }
+
+   @Override
+   public String toString() {
+       return label;
+   }
+}
+
+/**
+* Stores advertisements in capture order and indexes them by ID, review status and advertiser.
+* The status index is updated by Advertisement.setStatus, so lookups never scan the full list.
+* IDs in the A001 format are indexed by their number, so duplicate checks never render the ID string.
+*/
+class AdvertisementRepository extends AbstractList<Advertisement> {
+   private final List<Advertisement> advertisements = new ArrayList<>(); // Advertisements in capture order
+   private final Map<Long, Advertisement> advertisementsByNumber = new HashMap<>();
+   private final Map<String, Advertisement> advertisementsByID = new HashMap<>(); // IDs in any other format
+   private final Map<AdStatus, Set<Advertisement>> advertisementsByStatus = new EnumMap<>(AdStatus.class);
+   private final Map<String, Set<Advertisement>> advertisementsByAdvertiser = new HashMap<>();
+
+   @Override
+   public Advertisement get(int index) {
+       return advertisements.get(index);
+   }
+
+   @Override
+   public int size() {
+       return advertisements.size();
+   }
+
+   // Inserts an advertisement and adds it to every index
+   @Override
+   public void add(int index, Advertisement ad) {
+       if (ad == null) {
+           throw new NullPointerException("Advertisement cannot be null.");
+       }
+       advertisements.add(index, ad);
+       index(ad);
+       modCount++;
+   }
+
+   // Replaces an advertisement and moves the index entries to the new one
+   @Override
+   public Advertisement set(int index, Advertisement ad) {
+       if (ad == null) {
+           throw new NullPointerException("Advertisement cannot be null.");
+       }
+       Advertisement previous = advertisements.set(index, ad);
+       unindex(previous);
+       index(ad);
+       return previous;
+   }
+
+   // Removes an advertisement and drops it from every index
+   @Override
+   public Advertisement remove(int index) {
+       Advertisement removed = advertisements.remove(index);
+       unindex(removed);
+       modCount++;
+       return removed;
+   }
+
+   // Looks up an advertisement by its ID in constant time
+   public Advertisement findByID(String advertID) {
+       long advertNumber = Advertisement.parseAdvertNumber(advertID);
+       return advertNumber < 0 ? advertisementsByID.get(advertID) : advertisementsByNumber.get(advertNumber);
+   }
+
+   // Checks whether an advertisement with the same ID is already stored
+   public boolean containsID(Advertisement ad) {
+       return ad.getAdvertNumber() < 0 ? advertisementsByID.containsKey(ad.getAdvertID())
+                                       : containsNumber(ad.getAdvertNumber());
+   }
+
+   // Checks whether an advertisement number is already taken
+   public boolean containsNumber(long advertNumber) {
+       return advertisementsByNumber.containsKey(advertNumber);
+   }
+
+   // Returns the advertisements currently in the given status
+   public List<Advertisement> findByStatus(AdStatus status) {
+       return snapshot(advertisementsByStatus.get(status));
+   }
+
+   // Returns the advertisements submitted by the given advertiser
+   public List<Advertisement> findByAdvertiser(String advertiserName) {
+       return snapshot(advertisementsByAdvertiser.get(advertiserName));
+   }
+
+   // Number of advertisements currently in the given status
+   public int countByStatus(AdStatus status) {
+       Set<Advertisement> ads = advertisementsByStatus.get(status);
+       return ads == null ? 0 : ads.size();
+   }
+
+   // Called by Advertisement.setStatus to move an advertisement between status buckets
+   void statusChanged(Advertisement ad, AdStatus previousStatus, AdStatus newStatus) {
+       removeFrom(advertisementsByStatus, previousStatus, ad);
+       addTo(advertisementsByStatus, newStatus, ad);
+   }
+
+   private void index(Advertisement ad) {
+       if (ad.getAdvertNumber() < 0) {
+           advertisementsByID.put(ad.getAdvertID(), ad);
+       } else {
+           advertisementsByNumber.put(ad.getAdvertNumber(), ad);
+       }
+       addTo(advertisementsByStatus, ad.getStatus(), ad);
+       addTo(advertisementsByAdvertiser, ad.getAdvertiserName(), ad);
+       ad.setRepository(this);
+   }
+
+   private void unindex(Advertisement ad) {
+       if (ad.getAdvertNumber() < 0) {
+           advertisementsByID.remove(ad.getAdvertID(), ad);
+       } else {
+           advertisementsByNumber.remove(ad.getAdvertNumber(), ad);
+       }
+
+       removeFrom(advertisementsByStatus, ad.getStatus(), ad);
+       removeFrom(advertisementsByAdvertiser, ad.getAdvertiserName(), ad);
+       if (ad.getRepository() == this) {
+           ad.setRepository(null);
+       }
+   }
+
+   private static <K> void addTo(Map<K, Set<Advertisement>> index, K key, Advertisement ad) {
+       index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(ad);
+   }
+
+   private static <K> void removeFrom(Map<K, Set<Advertisement>> index, K key, Advertisement ad) {
+       Set<Advertisement> ads = index.get(key);
+       if (ads != null && ads.remove(ad) && ads.isEmpty()) {
+           index.remove(key);
+       }
+   }
+
+   private static List<Advertisement> snapshot(Set<Advertisement> ads) {
+       return ads == null ? Collections.emptyList() : new ArrayList<>(ads);
+   }
 }
 
 /**
@@ -194,37 +499,51 @@ class Advertisement {
 class MarketingStaff {
    private String staffID;
    private String name;
-   public List<Advertisement> advertisements;
+   public final AdvertisementRepository advertisements;
+   private final AdvertIDAllocator idAllocator = new AdvertIDAllocator();
 
    // Constructor to initialize a marketing staff member
    public MarketingStaff(String staffID, String name) {
        this.staffID = staffID;
        this.name = name;
-       this.advertisements = new ArrayList<>();
+       this.advertisements = new AdvertisementRepository();
    }
 
    // Updated captureAdvertisementDetails
    public void captureAdvertisementDetails(String advertiserName, String contactInfo, String content, 
                                            String placementPreferences, LocalDate appearanceDate, String size) {
-       String advertID = generateAdvertID();
-       Advertisement ad = new Advertisement(advertID, advertiserName, contactInfo, content, 
+       Advertisement.requireDetails(advertiserName, contactInfo, content); // Validate details before an ID is used up
+       Advertisement ad = new Advertisement(idAllocator.nextNumber(), advertiserName, contactInfo, content, 
                                              placementPreferences, appearanceDate, size);
-       ad.validateDetails(); // Validate details
        addAdvertisement(ad); // Ensure unique ID
        System.out.println("Advertisement details captured: " + ad.getDetails());
    }
-   // Generates a unique advertisement ID
-   private String generateAdvertID() {
-       int idNumber = advertisements.size() + 1;
-       return String.format("A%03d", idNumber);
+
+   // Captures a batch of submissions in order without throwing for invalid ones. Each submission is checked
+   // before anything is allocated for it, so only valid submissions use up an advertisement number; failures
+   // are recorded in the result by row index and error code.
+   public CaptureResult captureAll(List<AdvertisementSubmission> submissions) {
+       CaptureResult result = new CaptureResult();
+       for (int row = 0; row < submissions.size(); row++) {
+           AdvertisementSubmission submission = submissions.get(row);
+           CaptureError error = Advertisement.checkDetails(submission.getAdvertiserName(), submission.getContactInfo(), submission.getContent());
+           if (error != null) {
+               result.recordFailure(row, error);
+               continue;
+           }
+           addAdvertisement(new Advertisement(idAllocator.nextNumber(), submission.getAdvertiserName(), submission.getContactInfo(),
+                                              submission.getContent(), submission.getPlacementPreferences(),
+                                              submission.getAppearanceDate(), submission.getSize()));
+           result.recordCapture();
+       }
+       System.out.println("Advertisement batch captured: " + result);
+       return result;
    }
    
    //OCL Methods
-   private void addAdvertisement(Advertisement ad) {
-       for (Advertisement existingAd : advertisements) {
-           if (existingAd.getAdvertID().equals(ad.getAdvertID())) {
-               throw new IllegalStateException("Duplicate Advertisement IDs are not allowed.");
-           }
+   private synchronized void addAdvertisement(Advertisement ad) {
+       if (advertisements.containsID(ad)) {
+           throw new IllegalStateException("Duplicate Advertisement IDs are not allowed.");
        }
        advertisements.add(ad);
    }
@@ -233,19 +552,19 @@ class MarketingStaff {
    public void reviewAdvertisementSuitability(Advertisement ad) {
        ReviewProcess reviewProcess = new ReviewProcess();
        reviewProcess.assessSuitability(ad);
-       if (ad.requiresSuitability() && !"Pending Suitability Assessment".equals(ad.getReviewStatus())) {
+       if (ad.requiresSuitability()) {
            throw new IllegalStateException("Suitability status mismatch.");
        }
    }
 
    // Approves an advertisement if it meets all criteria
    public void approveAdvertisement(Advertisement ad) {
-       if (ad.getReviewStatus().equals("Approved")) {
+       if (ad.getStatus() == AdStatus.APPROVED) {
            if (ad.isPaid()) {
 //                ad.approveForForwarding();
                System.out.println("Advertisement approved for processing: " + ad.getAdvertID() + " - " +  ad.getReviewStatus());
            } else {
-               ad.setReviewStatus("Not Paid");
+               ad.setStatus(AdStatus.NOT_PAID);
                System.out.println("Advertisement cannot be approved: " + ad.getAdvertID() + " - " + ad.getReviewStatus());
            }
        } else {
@@ -255,13 +574,167 @@ class MarketingStaff {
 
    // Retrieves advertisements by their status
    public List<Advertisement> getAdvertisementsByStatus(String status) {
-       List<Advertisement> filteredAds = new ArrayList<>();
-       for (Advertisement ad : advertisements) {
-           if (ad.getReviewStatus().equals(status)) {
-               filteredAds.add(ad);
-           }
+       AdStatus adStatus = AdStatus.fromLabel(status);
+       return adStatus == null ? Collections.emptyList() : advertisements.findByStatus(adStatus);
+   }
+
+   public List<Advertisement> getAdvertisementsByStatus(AdStatus status) {
+       return advertisements.findByStatus(status);
+   }
+
+   // Number of advertisements in each status
+   public Map<AdStatus, Integer> getStatusCounts() {
+       Map<AdStatus, Integer> counts = new EnumMap<>(AdStatus.class);
+       for (AdStatus status : AdStatus.values()) {
+           counts.put(status, advertisements.countByStatus(status));
+       }
+       return counts;
+   }
+
+   // Retrieves advertisements submitted by an advertiser
+   public List<Advertisement> getAdvertisementsByAdvertiser(String advertiserName) {
+       return advertisements.findByAdvertiser(advertiserName);
+   }
+
+   // Retrieves an advertisement by its ID, or null if none exists
+   public Advertisement findAdvertisement(String advertID) {
+       return advertisements.findByID(advertID);
+   }
+}
+
+/**
+* Hands out advertisement numbers without locking. Each thread leases a block of numbers from a shared
+* atomic counter and allocates from it locally, so the counter is touched once per block rather than per ad.
+* Numbers are unique and increase monotonically within each thread.
+*/
+class AdvertIDAllocator {
+   private static final int BLOCK_SIZE = 64;
+
+   private final AtomicLong nextBlockStart = new AtomicLong(1);
+   private final ThreadLocal<long[]> leasedBlock = ThreadLocal.withInitial(() -> new long[2]); // {next, end}
+
+   // Returns the next advertisement number for the calling thread
+   public long nextNumber() {
+       long[] block = leasedBlock.get();
+       if (block[0] == block[1]) {
+           block[0] = nextBlockStart.getAndAdd(BLOCK_SIZE);
+           block[1] = block[0] + BLOCK_SIZE;
        }
-       return filteredAds;
+       return block[0]++;
+   }
+}
+
+/**
+* One advertisement submission for bulk capture, not yet validated.
+*/
+class AdvertisementSubmission {
+   private final String advertiserName;
+   private final String contactInfo;
+   private final String content;
+   private final String placementPreferences;
+   private final LocalDate appearanceDate;
+   private final String size;
+
+   public AdvertisementSubmission(String advertiserName, String contactInfo, String content, String placementPreferences,
+                                  LocalDate appearanceDate, String size) {
+       this.advertiserName = advertiserName;
+       this.contactInfo = contactInfo;
+       this.content = content;
+       this.placementPreferences = placementPreferences;
+       this.appearanceDate = appearanceDate;
+       this.size = size;
+   }
+
+   public String getAdvertiserName() {
+       return advertiserName;
+   }
+
+   public String getContactInfo() {
+       return contactInfo;
+   }
+
+   public String getContent() {
+       return content;
+   }
+
+   public String getPlacementPreferences() {
+       return placementPreferences;
+   }
+
+   public LocalDate getAppearanceDate() {
+       return appearanceDate;
+   }
+
+   public String getSize() {
+       return size;
+   }
+}
+
+/**
+* Reasons a submission can fail validation when it is captured.
+*/
+enum CaptureError {
+   MISSING_ADVERTISER_NAME,
+   MISSING_CONTACT_INFO,
+   MISSING_CONTENT;
+
+   private static final CaptureError[] VALUES = values();
+
+   static CaptureError fromCode(int code) {
+       return VALUES[code];
+   }
+}
+
+/**
+* Outcome of a bulk capture: how many submissions were captured, plus the row index and error code of each
+* one that failed validation, kept in parallel primitive arrays.
+*/
+class CaptureResult {
+   private int capturedCount;
+   private int failureCount;
+   private int[] failedRows = new int[16];
+   private byte[] errorCodes = new byte[16];
+
+   void recordCapture() {
+       capturedCount++;
+   }
+
+   void recordFailure(int row, CaptureError error) {
+       if (failureCount == failedRows.length) {
+           failedRows = Arrays.copyOf(failedRows, failureCount * 2);
+           errorCodes = Arrays.copyOf(errorCodes, failureCount * 2);
+       }
+       failedRows[failureCount] = row;
+       errorCodes[failureCount] = (byte) error.ordinal();
+       failureCount++;
+   }
+
+   public int getCapturedCount() {
+       return capturedCount;
+   }
+
+   public int getFailureCount() {
+       return failureCount;
+   }
+
+   // Row index, within the submitted batch, of the i-th failure
+   public int getFailedRow(int i) {
+       if (i < 0 || i >= failureCount) {
+           throw new IndexOutOfBoundsException("Failure index: " + i);
+       }
+       return failedRows[i];
+   }
+
+   public CaptureError getError(int i) {
+       if (i < 0 || i >= failureCount) {
+           throw new IndexOutOfBoundsException("Failure index: " + i);
+       }
+       return CaptureError.fromCode(errorCodes[i]);
+   }
+
+   @Override
+   public String toString() {
+       return "Captured: " + capturedCount + ", Failed: " + failureCount;
    }
 }
 
@@ -293,10 +766,10 @@ class PaymentProcessor {
 class ReviewProcess {
    public void assessSuitability(Advertisement ad) {
        if (ad.getContent().contains("inappropriate")) {
-           ad.setReviewStatus("Rejected");
+           ad.setStatus(AdStatus.REJECTED);
            System.out.println("Advertisement rejected: " + ad.getAdvertID());
        } else {
-           ad.setReviewStatus("Approved");
+           ad.setStatus(AdStatus.APPROVED);
            System.out.println("Advertisement approved: " + ad.getAdvertID());
        }
    }
@@ -307,8 +780,9 @@ class ReviewProcess {
 class ProcessingCenter {
    // Processes an advertisement for publication
    public void receiveAdvertisement(Advertisement ad) {
-       if (ad.getReviewStatus().equals("Approved") && ad.isPaid()) {
+       if (ad.getStatus() == AdStatus.APPROVED && ad.isPaid()) {
            ad.setProcessed(true);
+           ad.setStatus(AdStatus.PROCESSED);
            System.out.println("Processing advertisement for publication: " + ad.getAdvertID());
        } else {
            System.out.println("Cannot process advertisement: " + ad.getAdvertID());
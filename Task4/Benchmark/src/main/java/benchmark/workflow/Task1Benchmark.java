@@ -0,0 +1,144 @@
+package benchmark.workflow;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the Task 1 workflow operations.
+ * Every benchmark runs over a generated catalogue whose size and reject/unpaid ratios are parameters.
+ * Workflow events go to WorkflowEventSink.NO_OP, so logging does not dominate the measurements.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Task1Benchmark {
+
+    @Param({"1000", "100000"})
+    private int catalogueSize;
+
+    @Param({"0.1", "0.5"})
+    private double rejectRatio; // Share of advertisements whose content is rejected in review
+
+    @Param({"0.2"})
+    private double unpaidRatio; // Share of advertisements without a confirmed payment
+
+    private MarketingStaff staff;
+    private int next; // Cycles through the catalogue for single-advertisement benchmarks
+
+    @Setup(Level.Trial)
+    public void silenceEvents() {
+        WorkflowEvents.setSink(WorkflowEventSink.NO_OP);
+    }
+
+    // Reviewed and paid catalogue, so approval and status queries see the configured mix of statuses
+    @Setup(Level.Iteration)
+    public void buildCatalogue() {
+        staff = new MarketingStaff("M001", "John Doe");
+        PaymentProcessor paymentProcessor = new PaymentProcessor();
+        SplittableRandom random = new SplittableRandom(42);
+        for (Advertisement ad : generate(catalogueSize, rejectRatio)) {
+            staff.advertisements.add(ad);
+            staff.reviewAdvertisementSuitability(ad);
+            if (random.nextDouble() >= unpaidRatio) {
+                paymentProcessor.confirmPayment(ad);
+            }
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public void captureAdvertisementDetails() {
+        staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+    }
+
+    @Benchmark
+    public void reviewAdvertisementSuitability() {
+        staff.reviewAdvertisementSuitability(nextAdvertisement());
+    }
+
+    @Benchmark
+    public void approveAdvertisement() {
+        staff.approveAdvertisement(nextAdvertisement());
+    }
+
+    @Benchmark
+    public void getAdvertisementsByStatus(Blackhole blackhole) {
+        blackhole.consume(staff.getAdvertisementsByStatus("Approved"));
+        blackhole.consume(staff.getAdvertisementsByStatus("Not Paid"));
+    }
+
+    @Benchmark
+    public void archiveUnusedAdvertisements(ArchiveState state) {
+        state.archiveManager.archiveUnusedAdvertisements(state.staff.advertisements);
+    }
+
+    private Advertisement nextAdvertisement() {
+        Advertisement ad = staff.advertisements.get(next);
+        next = next + 1 == catalogueSize ? 0 : next + 1;
+        return ad;
+    }
+
+    /**
+     * Fresh, unarchived catalogue for every archive sweep; about half of it is older than six months.
+     */
+    @State(Scope.Benchmark)
+    public static class ArchiveState {
+        private ArchiveStore archiveStore; // Shared by every invocation and cleared in between, so no segment is mapped per sweep
+        private MarketingStaff staff;
+        private ArchiveManager archiveManager;
+
+        @Setup(Level.Trial)
+        public void openArchive() {
+            archiveStore = ArchiveStore.openTemporary();
+        }
+
+        @Setup(Level.Invocation)
+        public void buildCatalogue(Task1Benchmark benchmark) {
+            staff = new MarketingStaff("M001", "John Doe");
+            staff.advertisements.addAll(generate(benchmark.catalogueSize, benchmark.rejectRatio));
+            archiveStore.clear();
+            archiveManager = new ArchiveManager(archiveStore);
+        }
+
+        @TearDown(Level.Trial)
+        public void closeArchive() {
+            archiveStore.close();
+        }
+    }
+
+    // Generates pending advertisements with appearance dates spread over the last two years
+    static List<Advertisement> generate(int size, double rejectRatio) {
+        SplittableRandom random = new SplittableRandom(7);
+        LocalDate today = LocalDate.now();
+        List<Advertisement> ads = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String content = random.nextDouble() < rejectRatio ? "This ad is inappropriate." : "This is a valid ad.";
+            ads.add(new Advertisement(String.format("A%03d", i), "Advertiser " + (i % 100), "contact@a.com", content,
+                                      "Front Page", today.minusDays(i % 730), "Large"));
+        }
+        return ads;
+    }
+
+    // Runs every benchmark in this class with allocation profiling
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(Task1Benchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,108 @@
+package benchmark.workflow;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for CommandExecutor.executeCommands in Task 2.
+ * Each invocation runs review, payment, approval and forwarding commands over a fresh catalogue, with and
+ * without coalescing into batch commands. Workflow events go to WorkflowEventSink.NO_OP.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class Task2Benchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int catalogueSize;
+
+    @Param({"0.1", "0.5"})
+    private double rejectRatio; // Share of advertisements whose content is rejected in review
+
+    @Param({"0.2"})
+    private double unpaidRatio; // Share of advertisements without a confirmed payment
+
+    private CommandExecutor executor;
+    private CommandExecutor uncoalescedExecutor;
+    private MarketingStaff staff;
+
+    @Setup(Level.Trial)
+    public void createExecutors() {
+        WorkflowEvents.setSink(WorkflowEventSink.NO_OP);
+        executor = new CommandExecutor();
+        uncoalescedExecutor = new CommandExecutor();
+        uncoalescedExecutor.setCoalescingThreshold(Integer.MAX_VALUE);
+    }
+
+    // Queues the whole pipeline on both executors against a fresh catalogue; only one of them is run
+    @Setup(Level.Invocation)
+    public void queueCommands() {
+        staff = new MarketingStaff("M001", "John Doe");
+        List<Advertisement> ads = Task1Benchmark.generate(catalogueSize, rejectRatio);
+        staff.advertisements.addAll(ads);
+        queue(executor, ads);
+        queue(uncoalescedExecutor, ads);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearQueues() {
+        executor.getCommandQueue().clear();
+        uncoalescedExecutor.getCommandQueue().clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeExecutors() {
+        executor.close();
+        uncoalescedExecutor.close();
+    }
+
+    @Benchmark
+    public void executeCommands() {
+        executor.executeCommands();
+    }
+
+    @Benchmark
+    public void executeCommandsWithoutCoalescing() {
+        uncoalescedExecutor.executeCommands();
+    }
+
+    private void queue(CommandExecutor target, List<Advertisement> ads) {
+        PaymentProcessor paymentProcessor = new PaymentProcessor();
+        ProcessingCenter processingCenter = new ProcessingCenter();
+        SplittableRandom random = new SplittableRandom(42);
+        for (Advertisement ad : ads) {
+            target.addCommand(new ReviewAdvertisementCommand(staff, ad));
+        }
+        for (Advertisement ad : ads) {
+            if (random.nextDouble() >= unpaidRatio) {
+                target.addCommand(new ConfirmPaymentCommand(paymentProcessor, ad));
+            }
+        }
+        for (Advertisement ad : ads) {
+            target.addCommand(new ApproveAdvertisementCommand(staff, ad));
+        }
+        for (Advertisement ad : ads) {
+            target.addCommand(new ForwardAdvertisementCommand(processingCenter, ad));
+        }
+    }
+
+    // Runs every benchmark in this class with allocation profiling
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(Task2Benchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,10 +1,25 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 class Task1Test {
 
@@ -21,6 +36,11 @@ class Task1Test {
         archiveManager = new ArchiveManager();
     }
 
+    @AfterEach
+    void tearDown() {
+        archiveManager.close();
+    }
+
     @Test
     void testCaptureAdvertisementDetails() {
         // Positive case
@@ -47,6 +67,134 @@ class Task1Test {
         assertEquals("Rejected", ad.getReviewStatus());
     }
 
+    @Test
+    void testAdStatusTransitions() {
+        // Positive case: Full lifecycle through to archiving
+        Advertisement ad = new Advertisement("A001", "Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2023, 1, 15), "Large");
+        staff.advertisements.add(ad);
+        staff.reviewAdvertisementSuitability(ad);
+        paymentProcessor.confirmPayment(ad);
+        processingCenter.receiveAdvertisement(ad);
+        assertSame(AdStatus.PROCESSED, ad.getStatus());
+        ad.setStatus(AdStatus.ARCHIVED);
+        assertEquals(1, staff.getStatusCounts().get(AdStatus.ARCHIVED).intValue());
+        assertEquals(0, staff.getStatusCounts().get(AdStatus.APPROVED).intValue());
+
+        // Negative case: Archived advertisements cannot be revived
+        Advertisement archived = ad;
+        assertThrows(IllegalStateException.class, () -> archived.setStatus(AdStatus.APPROVED));
+        assertThrows(IllegalArgumentException.class, () -> archived.setReviewStatus("Unknown"));
+
+        // Edge case: Not Paid advertisements can be approved again after payment
+        ad = new Advertisement("A002", "Advertiser B", "contact@b.com", "Valid content", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
+        staff.reviewAdvertisementSuitability(ad);
+        staff.approveAdvertisement(ad);
+        assertSame(AdStatus.NOT_PAID, ad.getStatus());
+        paymentProcessor.confirmPayment(ad);
+        staff.reviewAdvertisementSuitability(ad);
+        staff.approveAdvertisement(ad);
+        assertSame(AdStatus.APPROVED, ad.getStatus());
+    }
+
+    @Test
+    void testReviewAll() {
+
+        // Positive case: Batch above the parallel threshold
+        for (int i = 0; i < 5000; i++) {
+            String content = i % 4 == 0 ? "inappropriate content" : "Valid content";
+            staff.advertisements.add(new Advertisement("B" + i, "Advertiser A", "contact@a.com", content, "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        }
+        ReviewSummary summary = staff.reviewAll(staff.advertisements);
+        assertEquals(3750, summary.getApprovedCount());
+        assertEquals(1250, summary.getRejectedCount());
+        assertEquals(1250, staff.getAdvertisementsByStatus("Rejected").size());
+        assertEquals("Rejected", staff.findAdvertisement("B4").getReviewStatus());
+        assertEquals("Approved", staff.findAdvertisement("B5").getReviewStatus());
+
+        // Edge case: Empty batch
+        assertEquals(0, staff.reviewAll(List.of()).getTotalCount());
+    }
+
+    @Test
+    void testContentModerator() throws Exception {
+
+        ContentModerator moderator = new ContentModerator(Arrays.asList("spam", "free money", "scam"));
+        ReviewProcess reviewProcess = new ReviewProcess(moderator);
+
+        // Positive case: Case-insensitive whole-word matches are all reported
+        Advertisement ad = new Advertisement("A001", "Advertiser A", "contact@a.com", "FREE MONEY, no Scam!", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        reviewProcess.assessSuitability(ad);
+        assertEquals("Rejected", ad.getReviewStatus());
+        assertEquals(Arrays.asList("free money", "scam"), reviewProcess.findBlockedTerms(ad));
+
+        // Negative case: Terms inside longer words are not matches
+        ad = new Advertisement("A002", "Advertiser B", "contact@b.com", "Spammers and scammers", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
+        reviewProcess.assessSuitability(ad);
+        assertEquals("Approved", ad.getReviewStatus());
+
+        // Edge case: Reloading the blocklist from a file
+        Path termFile = Files.createTempFile("blocked-terms", ".txt");
+        try {
+            Files.write(termFile, Arrays.asList("# blocked terms", "scammers", ""));
+            assertTrue(moderator.reloadIfModified(termFile));
+            assertEquals(1, moderator.getTermCount());
+            reviewProcess.assessSuitability(ad);
+            assertEquals("Rejected", ad.getReviewStatus());
+            assertFalse(moderator.reloadIfModified(termFile));
+        } finally {
+            Files.delete(termFile);
+        }
+    }
+
+    @Test
+    void testWorkflowEventSink() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AsyncWorkflowEventSink sink = new AsyncWorkflowEventSink(output, 4);
+        WorkflowEventSink previous = WorkflowEvents.getSink();
+        WorkflowEvents.setSink(sink);
+        try {
+            // Positive case: Events are written in order, with the status they had when published
+            staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+            Advertisement ad = staff.advertisements.get(0);
+            staff.reviewAdvertisementSuitability(ad);
+            staff.approveAdvertisement(ad);
+            paymentProcessor.confirmPayment(ad);
+            WorkflowEvents.flush();
+            String[] lines = output.toString().split(System.lineSeparator());
+            assertEquals(4, lines.length);
+            assertEquals("Advertisement details captured: ID: A001, Advertiser: Advertiser A, Content: Valid content, Size: Large, Status: Pending", lines[0]);
+            assertEquals("Advertisement approved for forwarding: A001", lines[1]);
+            assertEquals("Advertisement cannot be approved: A001 - Not Paid", lines[2]);
+            assertEquals("Payment confirmed for advertisement: A001", lines[3]);
+
+            // Edge case: More events than the buffer holds
+            for (int i = 0; i < 100; i++) {
+                paymentProcessor.confirmPayment(ad);
+            }
+            sink.close();
+            assertEquals(104, output.toString().split(System.lineSeparator()).length);
+
+            // Edge case: Events published after close are written straight through
+            assertDoesNotThrow(() -> paymentProcessor.confirmPayment(ad));
+            assertEquals(105, output.toString().split(System.lineSeparator()).length);
+
+            // Negative case: The no-op sink writes nothing
+            WorkflowEvents.setSink(WorkflowEventSink.NO_OP);
+            paymentProcessor.confirmPayment(ad);
+            assertEquals(105, output.toString().split(System.lineSeparator()).length);
+
+            // Negative case: Publishers fail instead of waiting forever once the writer has died
+            AsyncWorkflowEventSink broken = new AsyncWorkflowEventSink(new ByteArrayOutputStream(), 4);
+            assertThrows(IllegalStateException.class, () -> {
+                for (int i = 0; i < 100; i++) {
+                    broken.publish(WorkflowEventType.PAYMENT_CONFIRMED, null, null); // Formatting a null advertisement fails
+                }
+            });
+        } finally {
+            WorkflowEvents.setSink(previous);
+        }
+    }
+
     @Test
     void testConfirmPayment() {
         // Positive case
@@ -121,4 +269,770 @@ class Task1Test {
         archivedAds = archiveManager.getArchivedAdvertisements();
         assertEquals(1, archivedAds.size()); // Shouldnt be Added
     }
+
+    @Test
+    void testArchiveIncrementalSweep() {
+        // Positive case: Old advertisements are archived oldest month first
+        staff.advertisements.add(new Advertisement("A001", "Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2023, 3, 15), "Large"));
+        staff.advertisements.add(new Advertisement("A002", "Advertiser B", "contact@b.com", "Valid content", "Back Page", LocalDate.of(2023, 1, 15), "Medium"));
+        staff.advertisements.add(new Advertisement("A003", "Advertiser C", "contact@c.com", "Valid content", "Middle Page", LocalDate.now().plusMonths(1), "Small"));
+        archiveManager.archiveUnusedAdvertisements(staff.advertisements);
+        List<Advertisement> archivedAds = archiveManager.getArchivedAdvertisements();
+        assertEquals(2, archivedAds.size());
+        assertEquals("A002", archivedAds.get(0).getAdvertID());
+        assertEquals("A001", archivedAds.get(1).getAdvertID());
+        assertEquals(1, staff.advertisements.size()); // Archived advertisements are dropped from the heap
+
+        // Edge case: A late advertisement in an already swept month is still picked up, without duplicates
+        staff.advertisements.add(new Advertisement("A004", "Advertiser D", "contact@d.com", "Valid content", "Front Page", LocalDate.of(2023, 1, 20), "Large"));
+        archiveManager.archiveUnusedAdvertisements(staff.advertisements);
+        assertEquals(3, archivedAds.size());
+        assertEquals("A004", archivedAds.get(2).getAdvertID());
+
+        // Edge case: Removing an advertisement restarts the sweep without archiving anything twice
+        staff.advertisements.remove(0);
+        staff.advertisements.add(new Advertisement("A005", "Advertiser E", "contact@e.com", "Valid content", "Back Page", LocalDate.of(2023, 1, 25), "Medium"));
+        archiveManager.archiveUnusedAdvertisements(staff.advertisements);
+        assertEquals(4, archivedAds.size());
+        assertNull(archiveManager.findArchivedAdvertisement("A003"));
+        assertTrue(staff.advertisements.isEmpty());
+
+        // Edge case: Captures after a sweep never reuse the ID of an archived advertisement
+        staff.captureAdvertisementDetails("Advertiser F", "contact@f.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        assertEquals("A006", staff.advertisements.get(0).getAdvertID());
+        assertNull(staff.findAdvertisement("A002"));
+        assertEquals("Advertiser B", archiveManager.findArchivedAdvertisement("A002").getAdvertiserName());
+    }
+
+    @Test
+    void testArchiveStore() throws Exception {
+        // Positive case: archived advertisements survive reopening the store and span several segments
+        Path directory = Files.createTempDirectory("archive-test");
+        ArchiveStore store = ArchiveStore.open(directory, 256);
+        ArchiveManager durableManager = new ArchiveManager(store);
+        for (int i = 1; i <= 5; i++) {
+            staff.advertisements.add(new Advertisement("A00" + i, "Advertiser " + i, "contact@a.com", "Old content", "Front Page", LocalDate.of(2023, 1, i), "Large"));
+        }
+        durableManager.archiveUnusedAdvertisements(staff.advertisements);
+        store.close();
+        assertTrue(Files.exists(directory.resolve("archive-00001.seg")));
+
+        ArchiveStore reopened = ArchiveStore.open(directory, 256);
+        assertEquals(5, reopened.size());
+        Advertisement restored = reopened.find("A003");
+        assertEquals("Advertiser 3", restored.getAdvertiserName());
+        assertEquals(LocalDate.of(2023, 1, 3), restored.getAppearanceDate());
+        assertEquals(AdStatus.ARCHIVED, restored.getStatus());
+        int index = 0;
+        for (Advertisement ad : new ArchiveManager(reopened).getArchivedAdvertisements()) {
+            assertEquals("A00" + (++index), ad.getAdvertID());
+        }
+        assertEquals(5, index);
+
+        // Negative case: Unknown IDs and duplicate appends
+        assertNull(reopened.find("A999"));
+        assertThrows(IllegalStateException.class, () -> reopened.append(restored));
+
+        // Edge case: Clearing discards the records but keeps the segment files, so IDs can be archived again
+        reopened.clear();
+        assertEquals(0, reopened.size());
+        reopened.append(restored);
+        reopened.close();
+        ArchiveStore cleared = ArchiveStore.open(directory, 256);
+        assertEquals(1, cleared.size());
+        assertEquals("A003", cleared.get(0).getAdvertID());
+        cleared.close();
+
+        // Negative case: A closed store, or the temporary store of a closed manager, rejects further use
+        assertThrows(IllegalStateException.class, () -> cleared.append(restored));
+        assertThrows(IllegalStateException.class, cleared::size);
+        archiveManager.getArchivedAdvertisements();
+        archiveManager.close();
+        assertThrows(IllegalStateException.class, () -> archiveManager.getArchivedAdvertisements().size());
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> file.toFile().delete());
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void testCatalogueSnapshot() throws Exception {
+        // Positive case: statuses, flags and IDs survive a snapshot spanning several read buffers
+        staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        staff.captureAdvertisementDetails("Advertiser B", "contact@b.com", "inappropriate content", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
+        staff.reviewAll(staff.advertisements);
+        paymentProcessor.confirmPayment(staff.advertisements.get(0));
+        processingCenter.receiveAdvertisement(staff.advertisements.get(0));
+        char[] longContent = new char[2 * 1024 * 1024];
+        Arrays.fill(longContent, 'x');
+        staff.advertisements.add(new Advertisement("A003", "Advertiser C", "contact@c.com", new String(longContent), "Middle Page", LocalDate.of(2025, 3, 5), "Small"));
+        for (int i = 4; i <= 20000; i++) {
+            staff.advertisements.add(new Advertisement(String.format("A%03d", i), "Advertiser D", "contact@d.com", "Bulk content", "Front Page", LocalDate.of(2025, 4, 1), "Large"));
+        }
+        Path snapshot = Files.createTempFile("catalogue", ".snapshot");
+        CatalogueSnapshot.write(staff, snapshot);
+
+        MarketingStaff loaded = CatalogueSnapshot.load(snapshot);
+        assertEquals("M001", loaded.getStaffID());
+        assertEquals(20000, loaded.advertisements.size());
+        Advertisement processed = loaded.findAdvertisement("A001");
+        assertEquals("Processed", processed.getReviewStatus());
+        assertTrue(processed.isPaid());
+        assertTrue(processed.isProcessed());
+        assertEquals("Rejected", loaded.findAdvertisement("A002").getReviewStatus());
+        assertEquals(longContent.length, loaded.findAdvertisement("A003").getContent().length());
+        assertEquals(LocalDate.of(2025, 4, 1), loaded.advertisements.get(19999).getAppearanceDate());
+        assertEquals(19998, loaded.getAdvertisementsByStatus("Pending").size());
+
+        // Negative case: files that are not snapshots, or are cut short, are rejected
+        Path notSnapshot = Files.createTempFile("catalogue", ".txt");
+        Files.write(notSnapshot, "not a snapshot".getBytes());
+        assertThrows(IOException.class, () -> CatalogueSnapshot.load(notSnapshot));
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(notSnapshot, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> CatalogueSnapshot.load(notSnapshot));
+    }
+
+    @Test
+    void testWorkflowMetrics() {
+        // Positive case: each stage counts the advertisements it handled
+        WorkflowMetrics.reset();
+        staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        staff.captureAdvertisementDetails("Advertiser B", "contact@b.com", "inappropriate content", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
+        staff.reviewAll(staff.advertisements);
+        paymentProcessor.confirmPayment(staff.advertisements.get(0));
+        paymentProcessor.confirmPayment(staff.advertisements.get(0));
+        staff.approveAdvertisement(staff.advertisements.get(0));
+        processingCenter.receiveAdvertisement(staff.advertisements.get(0));
+        LatencySnapshot capture = WorkflowMetrics.snapshot().get(WorkflowStage.CAPTURE);
+        assertEquals(2, capture.getAdvertisementCount());
+        assertEquals(2, capture.getCallCount());
+        LatencySnapshot review = WorkflowMetrics.get(WorkflowStage.REVIEW).snapshot();
+        assertEquals(2, review.getAdvertisementCount());
+        assertEquals(1, review.getCallCount()); // One batch call
+        LatencySnapshot payment = WorkflowMetrics.get(WorkflowStage.PAYMENT).snapshot();
+        assertEquals(1, payment.getAdvertisementCount());
+        assertEquals(2, payment.getCallCount()); // The duplicate confirmation is a call too
+        assertEquals(1, WorkflowMetrics.get(WorkflowStage.FORWARDING).getAdvertisementCount());
+        assertTrue(capture.getP50() <= capture.getP99() && capture.getP99() <= capture.getP999());
+
+        // Edge case: percentiles come from log-linear buckets within 12.5% of the recorded values
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        LatencySnapshot snapshot = histogram.snapshot(1000);
+        assertEquals(1000, snapshot.getCallCount());
+        assertTrue(Math.abs(snapshot.getP50() - 500_000) <= 500_000 / 8);
+        assertTrue(Math.abs(snapshot.getP99() - 990_000) <= 990_000 / 8);
+        for (long value : new long[] {0, 7, 8, 15, 16, 1000, 123_456_789}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.upperBound(bucket - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+
+        // Negative case: failed calls are not recorded
+        assertThrows(IllegalArgumentException.class, () -> staff.captureAdvertisementDetails("", "contact@c.com", "Content", "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        assertEquals(2, WorkflowMetrics.get(WorkflowStage.CAPTURE).getAdvertisementCount());
+    }
+
+    @Test
+    void testReconcileSettlementFile() throws IOException {
+        for (int i = 1; i <= 1000; i++) {
+            staff.advertisements.add(new Advertisement(String.format("A%03d", i), "Advertiser", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        }
+        paymentProcessor.confirmPayment(staff.findAdvertisement("A002"));
+        StringBuilder rows = new StringBuilder("advertID,amount,reference\n# settlement batch 1\n");
+        for (int i = 1; i <= 500; i++) {
+            rows.append(String.format("A%03d", i)).append(",100.00,REF").append(i).append('\n');
+        }
+        rows.append("A001,100.00,REF1\n\nA9999,50.00,REF9999\n  A500  ,100.00,REF500\n");
+        Path settlement = Files.createTempFile("settlement", ".csv");
+        Files.write(settlement, rows.toString().getBytes());
+
+        // Positive case: every listed advertisement is paid once; repeats and unknown IDs are only counted
+        SettlementSummary summary = paymentProcessor.reconcile(settlement, staff.advertisements);
+        assertEquals(499, summary.getMatchedCount());
+        assertEquals(3, summary.getDuplicateCount()); // A002 was already paid, A001 and A500 appear twice
+        assertEquals(1, summary.getUnknownCount());
+        assertEquals(List.of("A9999"), summary.getUnknownIDs());
+        assertTrue(staff.findAdvertisement("A500").isPaid());
+        assertFalse(staff.findAdvertisement("A501").isPaid());
+
+        // Edge case: reconciling the same file again changes nothing
+        SettlementSummary repeated = paymentProcessor.reconcile(settlement, staff.advertisements);
+        assertEquals(0, repeated.getMatchedCount());
+        assertEquals(502, repeated.getDuplicateCount());
+
+        // Negative case: a missing file
+        assertThrows(IOException.class, () -> paymentProcessor.reconcile(settlement.resolveSibling("missing.csv"), staff.advertisements));
+    }
+
+    @Test
+    void testSubmissionImporter() throws IOException {
+        StringBuilder rows = new StringBuilder("advertiserName,contactInfo,content,placementPreferences,appearanceDate,size\n");
+        for (int i = 1; i <= 2500; i++) {
+            rows.append("Advertiser ").append(i).append(",contact@a.com,Valid content,Front Page,2025-01-15,Large\r\n");
+        }
+        rows.append("\"Smith, \"\"Sons\"\"\",contact@s.com,\"Line one\nline two\",Back Page,2025-02-10,Medium\n");
+        rows.append("Advertiser X,contact@x.com,,Front Page,2025-01-15,Large\n"); // Empty content
+        rows.append("Advertiser Y,contact@y.com,Valid content,Front Page,15/01/2025,Large\n"); // Bad date
+        rows.append("Advertiser Z,contact@z.com,Valid content\n"); // Too few fields
+        Path csv = Files.createTempFile("submissions", ".csv");
+        Files.write(csv, rows.toString().getBytes());
+
+        // Positive case: valid rows are captured in file order across several batches, quoted fields keep commas and newlines
+        ImportSummary summary = new SubmissionImporter(staff, 100, 2).importFile(csv);
+        assertEquals(2501, summary.getImportedCount());
+        assertEquals(1, summary.getRejectedCount());
+        assertEquals(2, summary.getMalformedCount());
+        assertEquals("Advertiser 1", staff.findAdvertisement("A001").getAdvertiserName());
+        Advertisement quoted = staff.findAdvertisement("A2501");
+        assertEquals("Smith, \"Sons\"", quoted.getAdvertiserName());
+        assertEquals("Line one\nline two", quoted.getContent());
+
+        // Edge case: NDJSON with escapes, key order changes, a missing key and a broken line
+        Path ndjson = Files.createTempFile("submissions", ".ndjson");
+        Files.write(ndjson, ("{\"advertiserName\":\"Caf\\u00e9 \\\"Uno\\\"\",\"contactInfo\":\"c@u.com\",\"content\":\"Valid\",\"placementPreferences\":\"Front Page\",\"appearanceDate\":\"2025-03-05\",\"size\":\"Small\"}\n"
+                + "{ \"size\": \"Large\", \"appearanceDate\": \"2025-03-06\", \"placementPreferences\": \"Back Page\", \"content\": \"Valid\", \"contactInfo\": \"c@d.com\", \"advertiserName\": \"Dos\" }\n"
+                + "\n{\"advertiserName\":\"Tres\",\"contactInfo\":null,\"content\":\"Valid\",\"placementPreferences\":\"Front Page\",\"appearanceDate\":\"2025-03-07\",\"size\":\"Small\"}\n"
+                + "{\"advertiserName\":\"Cuatro\",\"contactInfo\":\n").getBytes());
+        summary = new SubmissionImporter(staff).importFile(ndjson);
+        assertEquals(2, summary.getImportedCount());
+        assertEquals(1, summary.getRejectedCount());
+        assertEquals(1, summary.getMalformedCount());
+        assertEquals("Caf\u00e9 \"Uno\"", staff.findAdvertisement("A2502").getAdvertiserName());
+        assertEquals("Back Page", staff.findAdvertisement("A2503").getPlacementPreferences());
+
+        // Negative case: a missing file and invalid importer settings
+        assertThrows(IOException.class, () -> new SubmissionImporter(staff).importFile(csv.resolveSibling("missing.csv")));
+        assertThrows(IllegalArgumentException.class, () -> new SubmissionImporter(staff, 0, 1));
+        Files.delete(csv);
+        Files.delete(ndjson);
+    }
+
+    @Test
+    void testCaptureAll() {
+        List<AdvertisementSubmission> submissions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String contactInfo = i % 10 < 3 ? null : "contact@a.com"; // 30% of rows are invalid
+            submissions.add(new AdvertisementSubmission("Advertiser A", contactInfo, "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        }
+        submissions.add(new AdvertisementSubmission("Advertiser B", "contact@b.com", "Valid content", "Back Page", null, "Medium"));
+        submissions.add(new AdvertisementSubmission("Advertiser C", "contact@c.com", "Valid content", "Back Page", LocalDate.of(2025, 2, 10), ""));
+
+        // Positive case: only valid rows are captured and given IDs, in submission order
+        CaptureResult result = staff.captureAll(submissions);
+        assertEquals(700, result.getCapturedCount());
+        assertEquals(302, result.getFailureCount());
+        assertEquals(700, staff.advertisements.size());
+        assertEquals("A700", staff.advertisements.get(699).getAdvertID());
+
+        // Edge case: failures keep their row index and error code
+        assertEquals(0, result.getFailedRow(0));
+        assertEquals(CaptureError.MISSING_CONTACT_INFO, result.getError(0));
+        assertEquals(1000, result.getFailedRow(300));
+        assertEquals(CaptureError.MISSING_APPEARANCE_DATE, result.getError(300));
+        assertEquals(CaptureError.INVALID_SIZE, result.getError(301));
+
+        // Negative case: single captures still throw with the same message
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> staff.captureAdvertisementDetails("Advertiser A", "", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        assertEquals(CaptureError.MISSING_CONTACT_INFO.getMessage(), e.getMessage());
+    }
+
+    @Test
+    void testDetailsRenderer() throws IOException {
+        for (int i = 1; i <= 5000; i++) {
+            staff.captureAdvertisementDetails("Advertiser " + i, "contact@a.com", "Caf\u00e9 content " + i, "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        }
+        Advertisement first = staff.findAdvertisement("A001");
+        StringBuilder expected = new StringBuilder();
+        for (Advertisement ad : staff.advertisements) {
+            expected.append(ad.getDetails()).append(System.lineSeparator());
+        }
+
+        // Positive case: both sinks produce the getDetails lines, and a channel listing spans many buffer flushes
+        StringBuilder listing = new StringBuilder();
+        DetailsRenderer.render(staff.advertisements, listing);
+        assertEquals(expected.toString(), listing.toString());
+        Path file = Files.createTempFile("listing", ".txt");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = DetailsRenderer.render(staff.advertisements, channel);
+            assertEquals(Files.size(file), written);
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(5000, lines.size());
+        assertEquals(first.getDetails(), lines.get(0));
+
+        // Edge case: the encoded line is cached until the status changes
+        byte[] encoded = first.getEncodedDetails();
+        assertSame(encoded, first.getEncodedDetails());
+        first.setStatus(AdStatus.APPROVED);
+        assertNotSame(encoded, first.getEncodedDetails());
+        assertTrue(new String(first.getEncodedDetails(), StandardCharsets.UTF_8).endsWith("Status: Approved"));
+
+        // Edge case: a line longer than the write buffer
+        Advertisement large = new Advertisement("A9999", "Advertiser", "contact@a.com", "x".repeat(200_000), "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DetailsRenderer.render(List.of(large), channel);
+        }
+        assertEquals(large.getDetails() + "\n", Files.readString(file));
+    }
+
+    @Test
+    void testAdvertisementRegistry() throws InterruptedException {
+        AdvertisementRegistry registry = new AdvertisementRegistry();
+        Thread[] workers = new Thread[4];
+        for (int t = 0; t < workers.length; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    new Advertisement("W" + worker + "-" + i, "Advertiser", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large").recordDetails(registry);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Positive case: concurrent registrations all land in the scoped registry and not in the global one
+        assertEquals(4000, registry.size());
+        assertEquals(4000, registry.snapshot().size());
+        assertNotNull(registry.find("W3-999"));
+        assertNull(AdvertisementRegistry.global().find("W3-999"));
+
+        // Edge case: archived advertisements stay reachable while referenced, and can be evicted explicitly
+        Advertisement archived = registry.find("W0-0");
+        archived.setStatus(AdStatus.ARCHIVED);
+        assertSame(archived, registry.find("W0-0"));
+        assertTrue(registry.evict(archived));
+        assertFalse(registry.contains("W0-0"));
+        assertFalse(registry.evict(archived));
+
+        // Negative case: a full registry evicts archived advertisements before refusing new ones
+        AdvertisementRegistry capped = new AdvertisementRegistry(2, AdvertisementRegistry.ArchivedRetention.STRONG);
+        Advertisement first = new Advertisement("A001", "Advertiser", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        first.recordDetails(capped);
+        new Advertisement("A002", "Advertiser", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large").recordDetails(capped);
+        Advertisement third = new Advertisement("A003", "Advertiser", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        assertThrows(IllegalStateException.class, () -> third.recordDetails(capped));
+        first.setStatus(AdStatus.ARCHIVED);
+        assertThrows(IllegalStateException.class, () -> third.recordDetails(capped)); // STRONG keeps archived advertisements
+        AdvertisementRegistry evicting = new AdvertisementRegistry(2, AdvertisementRegistry.ArchivedRetention.EVICT);
+        first.recordDetails(evicting); // Already archived, so evicted at once
+        new Advertisement("A002", "Advertiser", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large").recordDetails(evicting);
+        assertDoesNotThrow(() -> third.recordDetails(evicting));
+        assertEquals(2, evicting.size());
+        assertThrows(IllegalArgumentException.class, () -> new AdvertisementRegistry(0, AdvertisementRegistry.ArchivedRetention.WEAK));
+    }
+
+    @Test
+    void testPublicationScheduler() {
+        LocalDate today = LocalDate.of(2025, 6, 1);
+        ProcessingCenter scheduledCenter = new ProcessingCenter(new PublicationScheduler(today));
+        PublicationScheduler scheduler = scheduledCenter.getScheduler();
+        String[] placements = {"Front Page", "Back Page", "Middle Page"};
+        for (int i = 1; i <= 3000; i++) {
+            Advertisement ad = new Advertisement(String.format("A%03d", i), "Advertiser", "contact@a.com", "Valid content",
+                                                 placements[i % 3], today.plusDays(i % 1000), "Large"); // Up to 999 days ahead
+            staff.advertisements.add(ad);
+            ad.setStatus(AdStatus.APPROVED);
+            paymentProcessor.confirmPayment(ad);
+            scheduledCenter.receiveAdvertisement(ad);
+        }
+
+        // Positive case: ads dated today are processed at once, later ones wait for their appearance date
+        assertEquals(3, staff.getAdvertisementsByStatus("Processed").size());
+        assertEquals(2997, scheduler.size());
+        assertEquals(3, scheduledCenter.publishDue(today.plusDays(1)));
+        assertTrue(staff.findAdvertisement("A001").isProcessed());
+        assertFalse(staff.findAdvertisement("A002").isProcessed());
+
+        // Edge case: a long jump releases wheel and overflow days in order, and a withdrawn approval is refused
+        staff.findAdvertisement("A010").setStatus(AdStatus.REJECTED);
+        assertEquals(2396, scheduledCenter.publishDue(today.plusDays(800)));
+        assertEquals(AdStatus.REJECTED, staff.findAdvertisement("A010").getStatus());
+        assertEquals(597, scheduler.size());
+        assertEquals(597, scheduledCenter.publishDue(today.plusDays(2000)));
+        assertEquals(0, scheduler.size());
+        assertEquals(today.plusDays(2000), scheduler.getCurrentDate());
+
+        // Negative case: publishing without a scheduler, and scheduling without an appearance date
+        assertThrows(IllegalStateException.class, () -> processingCenter.publishDue(today));
+        Advertisement undated = new Advertisement("A9999", "Advertiser", "contact@a.com", "Valid content", "Front Page", null, "Large");
+        assertThrows(IllegalArgumentException.class, () -> scheduler.schedule(undated));
+    }
+
+    @Test
+    void testPlacementAllocator() {
+        LocalDate issue = LocalDate.of(2025, 6, 1);
+        PlacementAllocator allocator = new PlacementAllocator(8, 8, 4);
+        Advertisement small = approved("A001", "Front Page", issue, "Small");
+        Advertisement[] large = {approved("A002", "Front Page", issue, "Large"), approved("A003", "Front Page", issue, "Large")};
+
+        // Positive case: sizes take aligned blocks, so a small ad leaves the second half of the page to a large one
+        assertEquals(0, allocator.allocate(small).getFirstSlot());
+        Placement placement = allocator.allocate(large[0]);
+        assertEquals(Page.FRONT, placement.getPage());
+        assertEquals(4, placement.getFirstSlot());
+        assertSame(placement, allocator.allocate(large[0]));
+        assertEquals(3, allocator.getFreeSlots(issue, Page.FRONT));
+
+        // Edge case: a full page falls back to the next lower-priority page, and a full back page has nowhere to go
+        assertEquals(Page.MIDDLE, allocator.allocate(large[1]).getPage());
+        assertEquals(Page.BACK, allocator.allocate(approved("A004", "Back Page", issue, "Large")).getPage());
+        assertNull(allocator.allocate(approved("A005", "Back Page", issue, "Medium")));
+        assertTrue(allocator.release(large[0]));
+        assertFalse(allocator.release(large[0]));
+        assertEquals(7, allocator.getFreeSlots(issue, Page.FRONT));
+
+        // Edge case: a batch of 100,000 ads over a year of issues is packed largest first
+        String[] pages = {"Front Page", "Middle Page", "Back Page"};
+        String[] sizes = {"Small", "Medium", "Large"};
+        List<Advertisement> batch = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            batch.add(approved("B" + i, pages[i % 3], issue.plusDays(i % 365), sizes[(i / 3) % 3]));
+        }
+        PlacementAllocator calendar = new PlacementAllocator();
+        PlacementSummary summary = calendar.allocateAll(batch);
+        assertEquals(100_000, summary.getPlacedCount() + summary.getUnplaced().size());
+        assertTrue(summary.getFallbackCount() > 0);
+        assertEquals(0, calendar.getFreeSlots(issue, Page.BACK));
+        assertEquals(AdSize.SMALL.getLabel(), summary.getUnplaced().get(summary.getUnplaced().size() - 1).getSize());
+
+        // Negative case: unapproved ads and unknown sizes are refused
+        Advertisement pending = new Advertisement("A006", "Advertiser", "contact@a.com", "Valid content", "Front Page", issue, "Large");
+        assertThrows(IllegalStateException.class, () -> allocator.allocate(pending));
+        assertThrows(IllegalArgumentException.class, () -> allocator.allocate(approved("A007", "Front Page", issue, "Huge")));
+
+        // Negative case: a batch with an unapproved ad is refused before any of its ads takes a slot
+        Advertisement first = approved("A008", "Middle Page", issue, "Large");
+        assertThrows(IllegalStateException.class, () -> allocator.allocateAll(List.of(first, pending)));
+        assertNull(allocator.getPlacement(first));
+        assertEquals(4, allocator.getFreeSlots(issue, Page.MIDDLE));
+    }
+
+    private static Advertisement approved(String advertID, String placement, LocalDate appearanceDate, String size) {
+        Advertisement ad = new Advertisement(advertID, "Advertiser", "contact@a.com", "Valid content", placement, appearanceDate, size);
+        ad.setStatus(AdStatus.APPROVED);
+        return ad;
+    }
+
+    @Test
+    void testConcurrentStateTransitions() throws InterruptedException {
+        int count = 10_000;
+        for (int i = 1; i <= count; i++) {
+            Advertisement ad = new Advertisement(String.format("A%03d", i), "Advertiser", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2020, 1, 15), "Large");
+            staff.advertisements.add(ad);
+            ad.setStatus(AdStatus.APPROVED);
+        }
+        AtomicInteger confirmations = new AtomicInteger();
+        WorkflowEventSink previous = WorkflowEvents.getSink();
+        WorkflowEvents.setSink((type, ad, status) -> {
+            if (type == WorkflowEventType.PAYMENT_CONFIRMED) {
+                confirmations.incrementAndGet();
+            }
+        });
+        try {
+            // Positive case: four payment workers race on every ad, and each payment is confirmed exactly once
+            runConcurrently(4, () -> {
+                for (Advertisement ad : staff.advertisements) {
+                    paymentProcessor.confirmPayment(ad);
+                }
+            });
+            assertEquals(count, confirmations.get());
+
+            // Edge case: forwarding and archiving race; no ad ends up both processed and archived,
+            // and only the processed ads are left in the repository
+            List<Advertisement> ads = new ArrayList<>(staff.advertisements);
+            runConcurrently(2, () -> {
+                for (Advertisement ad : ads) {
+                    processingCenter.receiveAdvertisement(ad);
+                }
+            }, () -> archiveManager.archiveUnusedAdvertisements(staff.advertisements));
+            int processed = 0;
+            for (Advertisement ad : ads) {
+                assertTrue(ad.isPaid());
+                assertEquals(ad.isProcessed(), ad.getStatus() == AdStatus.PROCESSED);
+                assertEquals(ad.isProcessed(), ad.getStatus() != AdStatus.ARCHIVED);
+                processed += ad.isProcessed() ? 1 : 0;
+            }
+            assertEquals(processed, staff.advertisements.size());
+            assertEquals(processed, staff.advertisements.countByStatus(AdStatus.PROCESSED));
+            assertEquals(count - processed, archiveManager.getArchiveStore().size());
+
+            // Negative case: a conditional transition fails once its condition no longer holds
+            Advertisement ad = staff.advertisements.get(0);
+            assertFalse(ad.markPaid());
+            assertFalse(ad.markNotPaid());
+            assertFalse(ad.compareAndSetStatus(AdStatus.APPROVED, AdStatus.REJECTED));
+        } finally {
+            WorkflowEvents.setSink(previous);
+        }
+    }
+
+    // Starts the tasks on separate threads, the first one repeated to fill the thread count, and waits for all of them
+    private static void runConcurrently(int threads, Runnable... tasks) throws InterruptedException {
+        Thread[] workers = new Thread[Math.max(threads, tasks.length)];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(t < tasks.length ? tasks[t] : tasks[0]);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    @Test
+    void testAdvertisementQuery() {
+        String[] placements = {"Front Page", "Middle Page", "Back Page"};
+        for (int i = 1; i <= 3000; i++) {
+            Advertisement ad = new Advertisement(String.format("A%03d", i), "Advertiser " + (i % 100), "contact@a.com", "Valid content",
+                                                 placements[i % 3], LocalDate.of(2025, 1, 1).plusDays(i % 365), "Large");
+            staff.advertisements.add(ad);
+            if (i % 10 == 0) {
+                ad.setStatus(AdStatus.APPROVED);
+                paymentProcessor.confirmPayment(ad);
+            }
+        }
+
+        // Positive case: combined criteria read the most selective index and check the rest lazily
+        AdvertisementQuery approvedFrontPage = staff.queryAdvertisements().withStatus(AdStatus.APPROVED).withPlacement("Front Page").paid(true);
+        assertTrue(approvedFrontPage.explain().startsWith("STATUS_INDEX (300"));
+        assertEquals(100, approvedFrontPage.count());
+        AdvertisementQuery advertiserInMarch = staff.queryAdvertisements()
+                .withStatus(AdStatus.PENDING)
+                .byAdvertiser("Advertiser 7")
+                .appearingBetween(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31));
+        assertTrue(advertiserInMarch.explain().startsWith("ADVERTISER_INDEX (30"));
+        assertTrue(advertiserInMarch.stream().allMatch(ad -> ad.getAppearanceDate().getMonthValue() == 3 && ad.getAdvertiserName().equals("Advertiser 7")));
+        assertTrue(staff.queryAdvertisements().appearingBetween(LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 12)).explain().startsWith("MONTH_INDEX"));
+        assertEquals(27, staff.queryAdvertisements().appearingBetween(LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 12)).count());
+
+        // Edge case: a cursor pages through results, and unindexed criteria fall back to a full scan
+        AdvertisementCursor cursor = staff.queryAdvertisements().withStatus(AdStatus.APPROVED).cursor(128);
+        assertEquals(128, cursor.nextPage().size());
+        assertEquals(128, cursor.nextPage().size());
+        assertEquals(44, cursor.nextPage().size());
+        assertFalse(cursor.hasNext());
+        AdvertisementQuery custom = staff.queryAdvertisements().processed(false).where(ad -> ad.getAdvertID().endsWith("99"));
+        assertTrue(custom.explain().startsWith("FULL_SCAN"));
+        assertEquals(30, custom.count());
+
+        // Edge case: advertisements captured and removed between pages disturb no index, and nothing repeats
+        List<AdvertisementQuery> queries = List.of(
+                staff.queryAdvertisements().processed(false),
+                staff.queryAdvertisements().appearingBetween(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 31)),
+                staff.queryAdvertisements().withStatus(AdStatus.APPROVED),
+                staff.queryAdvertisements().byAdvertiser("Advertiser 7"));
+        String[] sources = {"FULL_SCAN", "MONTH_INDEX", "STATUS_INDEX", "ADVERTISER_INDEX"};
+        for (int q = 0; q < queries.size(); q++) {
+            AdvertisementQuery query = queries.get(q);
+            assertTrue(query.explain().startsWith(sources[q]));
+            List<Advertisement> expected = new ArrayList<>(query.stream().toList());
+            AdvertisementCursor paged = query.cursor(10);
+            List<Advertisement> seen = new ArrayList<>(paged.nextPage());
+            Advertisement captured = new Advertisement("B00" + q, "Advertiser 7", "contact@a.com", "Valid content",
+                                                       "Front Page", LocalDate.of(2025, 1, 15), "Large");
+            staff.advertisements.add(captured);
+            captured.setStatus(AdStatus.APPROVED);
+            Advertisement removed = expected.remove(expected.size() - 1);
+            staff.advertisements.removeIf(ad -> ad == removed);
+            while (paged.hasNext()) {
+                seen.addAll(assertDoesNotThrow(paged::nextPage));
+            }
+            assertEquals(seen.size(), seen.stream().distinct().count());
+            assertTrue(seen.containsAll(expected));
+        }
+
+        // Negative case: exhausted cursors, invalid page sizes and reversed date ranges
+        assertThrows(NoSuchElementException.class, cursor::nextPage);
+        assertThrows(IllegalArgumentException.class, () -> staff.queryAdvertisements().cursor(0));
+        assertThrows(IllegalArgumentException.class, () -> staff.queryAdvertisements().appearingBetween(LocalDate.of(2025, 2, 1), LocalDate.of(2025, 1, 1)));
+    }
+
+    @Test
+    void testReportingViews() throws InterruptedException {
+        String[] sizes = {"Small", "Medium", "Large"};
+        for (int i = 1; i <= 3000; i++) {
+            String content = i % 4 == 0 ? "This ad is inappropriate." : "Valid content";
+            staff.captureAdvertisementDetails("Advertiser " + (i % 10), "contact@a.com", content, i % 2 == 0 ? "Front Page" : "Back Page",
+                                              LocalDate.of(2025, 1 + i % 12, 1), sizes[i % 3]);
+        }
+        ReportingViews views = staff.advertisements.getViews();
+        assertEquals(3000, views.countByStatus(AdStatus.PENDING));
+
+        // Positive case: counters follow every lifecycle step, while a reader polls them concurrently
+        AtomicInteger inconsistentTotals = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (views.getTotalCount() != 3000) {
+                    inconsistentTotals.incrementAndGet();
+                }
+                views.getStatusCounts();
+            }
+        });
+        reader.start();
+        staff.reviewAll(staff.advertisements);
+        for (int i = 0; i < 3000; i += 2) {
+            paymentProcessor.confirmPayment(staff.advertisements.get(i));
+        }
+        for (Advertisement ad : staff.advertisements) {
+            staff.approveAdvertisement(ad);
+            processingCenter.receiveAdvertisement(ad);
+        }
+        reader.interrupt();
+        reader.join();
+        assertEquals(0, inconsistentTotals.get());
+        for (AdStatus status : AdStatus.values()) {
+            assertEquals(staff.advertisements.countByStatus(status), views.countByStatus(status));
+        }
+        assertEquals(1500, views.getPaidCount());
+        assertEquals(300, views.countByAdvertiser("Advertiser 3"));
+        assertEquals(1000, views.countBySize("Large"));
+        assertEquals(1500, views.countByPlacement("Front Page"));
+        assertEquals(250, views.countByMonth(YearMonth.of(2025, 6)));
+        assertEquals(12, views.getMonthCounts().size());
+        assertEquals(staff.getStatusCounts().get(AdStatus.PROCESSED).longValue(), views.countByStatus(AdStatus.PROCESSED));
+
+        // Edge case: removing an advertisement takes it out of every view
+        Advertisement removed = staff.advertisements.remove(0);
+        assertEquals(2999, views.getTotalCount());
+        assertEquals(removed.isPaid() ? 1499 : 1500, views.getPaidCount());
+        assertEquals(staff.advertisements.countByStatus(removed.getStatus()), views.countByStatus(removed.getStatus()));
+
+        // Negative case: unknown keys count zero
+        assertEquals(0, views.countByAdvertiser("Nobody"));
+        assertEquals(0, views.countBySize(null));
+    }
+
+    @Test
+    void testChangeFeed() {
+        /**
+         * Records the events and terminal signal it receives, requesting the given demand on subscription.
+         */
+        class RecordingSubscriber implements Flow.Subscriber<ChangeEvent> {
+            private final long initialDemand;
+            private final List<ChangeEvent> events = new ArrayList<>();
+            private Flow.Subscription subscription;
+            private Throwable error;
+            private boolean completed;
+
+            RecordingSubscriber(long initialDemand) {
+                this.initialDemand = initialDemand;
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                if (initialDemand > 0) {
+                    subscription.request(initialDemand);
+                }
+            }
+
+            @Override
+            public void onNext(ChangeEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                error = throwable;
+            }
+
+            @Override
+            public void onComplete() {
+                completed = true;
+            }
+        }
+
+        WorkflowEventSink previous = WorkflowEvents.getSink();
+        ChangeFeed feed = new ChangeFeed(WorkflowEventSink.NO_OP, 4, Runnable::run);
+        WorkflowEvents.setSink(feed);
+        try {
+            // Positive case: events arrive in sequence, only as far as the subscriber's demand
+            RecordingSubscriber slow = new RecordingSubscriber(2);
+            feed.subscribe(slow);
+            staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+            staff.captureAdvertisementDetails("Advertiser B", "contact@b.com", "Valid content", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
+            staff.captureAdvertisementDetails("Advertiser C", "contact@c.com", "Valid content", "Middle Page", LocalDate.of(2025, 3, 5), "Small");
+            assertEquals(2, slow.events.size());
+            assertEquals(0, slow.events.get(0).getSequence());
+            assertEquals(WorkflowEventType.CAPTURED, slow.events.get(1).getType());
+            assertEquals("A002", slow.events.get(1).getAdvertID());
+            slow.subscription.request(1);
+            assertEquals(3, slow.events.size());
+
+            Advertisement ad = staff.advertisements.get(0);
+            staff.reviewAdvertisementSuitability(ad);
+            paymentProcessor.confirmPayment(ad);
+            assertEquals(3, slow.events.size());
+
+            // Positive case: a subscription resumes from a retained sequence
+            RecordingSubscriber resumed = new RecordingSubscriber(Long.MAX_VALUE);
+            feed.subscribe(resumed, 2);
+            assertEquals(3, resumed.events.size());
+            assertEquals(2, resumed.events.get(0).getSequence());
+            assertEquals(WorkflowEventType.REVIEW_APPROVED, resumed.events.get(1).getType());
+            assertEquals(WorkflowEventType.PAYMENT_CONFIRMED, resumed.events.get(2).getType());
+            assertEquals(AdStatus.APPROVED, resumed.events.get(2).getStatus());
+
+            // Edge case: a subscriber more than the ring capacity behind is failed; publishers never wait for it
+            staff.approveAdvertisement(ad);
+            processingCenter.receiveAdvertisement(ad);
+            staff.captureAdvertisementDetails("Advertiser D", "contact@d.com", "Valid content", "Front Page", LocalDate.of(2025, 4, 1), "Large");
+            assertEquals(8, feed.getNextSequence());
+            assertEquals(4, feed.getOldestSequence());
+            assertEquals(6, resumed.events.size());
+            assertTrue(slow.error instanceof IllegalStateException);
+            assertEquals(3, slow.events.size());
+            assertEquals(1, feed.getSubscriberCount());
+
+            // Negative case: resuming from a sequence that is no longer retained, or requesting no demand
+            RecordingSubscriber stale = new RecordingSubscriber(1);
+            feed.subscribe(stale, 0);
+            assertTrue(stale.error instanceof IllegalStateException);
+            assertTrue(stale.events.isEmpty());
+            RecordingSubscriber invalid = new RecordingSubscriber(0);
+            feed.subscribe(invalid);
+            invalid.subscription.request(0);
+            assertTrue(invalid.error instanceof IllegalArgumentException);
+
+            // Edge case: closing completes the remaining subscriber after everything already published
+            feed.close();
+            assertTrue(resumed.completed);
+            assertEquals(0, feed.getSubscriberCount());
+        } finally {
+            WorkflowEvents.setSink(previous);
+        }
+    }
+
+    @Test
+    void testGetAdvertisementsByStatus() {
+        // Positive case: status index follows review and approval
+        staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        staff.captureAdvertisementDetails("Advertiser B", "contact@b.com", "inappropriate content", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
+        staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "Unpaid content", "Middle Page", LocalDate.of(2025, 3, 5), "Small");
+        assertEquals(3, staff.getAdvertisementsByStatus("Pending").size());
+        for (Advertisement ad : staff.advertisements) {
+            staff.reviewAdvertisementSuitability(ad);
+        }
+        paymentProcessor.confirmPayment(staff.findAdvertisement("A001"));
+        for (Advertisement ad : staff.advertisements) {
+            staff.approveAdvertisement(ad);
+        }
+        assertEquals("A001", staff.getAdvertisementsByStatus("Approved").get(0).getAdvertID());
+        assertEquals("A002", staff.getAdvertisementsByStatus("Rejected").get(0).getAdvertID());
+        assertEquals("A003", staff.getAdvertisementsByStatus("Not Paid").get(0).getAdvertID());
+        assertTrue(staff.getAdvertisementsByStatus("Pending").isEmpty());
+        assertEquals(2, staff.getAdvertisementsByAdvertiser("Advertiser A").size());
+
+        // Negative case: Unknown ID and status
+        assertNull(staff.findAdvertisement("A999"));
+        assertTrue(staff.getAdvertisementsByStatus("Unknown").isEmpty());
+    }
+
 }
@@ -1,5 +1,12 @@
 import org.junit.jupiter.api.*;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -23,6 +30,12 @@ public class Task2Test {
         executor = new CommandExecutor();
     }
 
+    @AfterEach
+    public void tearDown() {
+        executor.close();
+        archiveManager.close();
+    }
+
     @Test
     public void testCaptureAdvertisement_PositiveCase() {
         executor.addCommand(new CaptureAdvertisementCommand(staff, "Advertiser A", "contact@a.com", "Valid ad", "Front Page", LocalDate.of(2025, 1, 15), "Large"));
@@ -141,4 +154,254 @@ public class Task2Test {
 
         assertTrue(executor.getCommandQueue().isEmpty());
     }
+
+    @Test
+    public void testCommandExecutor_ConcurrentPipeline() {
+        // Positive case: each advertisement's commands stay in order while advertisements run in parallel
+        CommandExecutor concurrentExecutor = new CommandExecutor(4);
+        for (int i = 0; i < 200; i++) {
+            String content = i % 3 == 0 ? "inappropriate ad" : "Valid ad";
+            staff.advertisements.add(new Advertisement(String.format("A%03d", i), "Advertiser", "contact@a.com", content, "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        }
+        for (Advertisement ad : staff.advertisements) {
+            concurrentExecutor.addCommand(new ReviewAdvertisementCommand(staff, ad));
+            if (ad.getContent().startsWith("Valid") || ad.getAdvertID().endsWith("1")) {
+                concurrentExecutor.addCommand(new ConfirmPaymentCommand(paymentProcessor, ad));
+            }
+        }
+        for (Advertisement ad : staff.advertisements) {
+            concurrentExecutor.addCommand(new ApproveAdvertisementCommand(staff, ad));
+            concurrentExecutor.addCommand(new ForwardAdvertisementCommand(processingCenter, ad));
+        }
+        concurrentExecutor.executeCommands();
+        for (Advertisement ad : staff.advertisements) {
+            assertEquals(ad.getContent().startsWith("Valid") ? "Processed" : "Rejected", ad.getReviewStatus());
+        }
+        assertEquals(133, staff.getAdvertisementsByStatus("Processed").size());
+
+        // Negative case: a failed command skips the later commands for its advertisement only
+        Advertisement failing = new Advertisement("B001", "Advertiser B", "contact@b.com", "Valid ad", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
+        Advertisement other = new Advertisement("B002", "Advertiser B", "contact@b.com", "Valid ad", "Back Page", LocalDate.of(2025, 2, 10), "Medium");
+        concurrentExecutor.addCommand(new ConfirmPaymentCommand(paymentProcessor, null) {
+            @Override
+            public Advertisement getAdvertisement() {
+                return failing;
+            }
+        });
+        concurrentExecutor.addCommand(new ReviewAdvertisementCommand(staff, failing));
+        concurrentExecutor.addCommand(new ReviewAdvertisementCommand(staff, other));
+        assertThrows(NullPointerException.class, concurrentExecutor::executeCommands);
+        assertEquals("Pending", failing.getReviewStatus());
+        assertEquals("Approved", other.getReviewStatus());
+        assertTrue(concurrentExecutor.getCommandQueue().isEmpty());
+        concurrentExecutor.close();
+        assertThrows(IllegalStateException.class, concurrentExecutor::executeCommands);
+    }
+
+    @Test
+    public void testCommandExecutor_Coalescing() {
+        // Positive case: long runs of single-advertisement commands give the same results as sequential execution
+        for (int i = 0; i < 300; i++) {
+            String content = i % 3 == 0 ? "inappropriate ad" : "Valid ad";
+            staff.advertisements.add(new Advertisement(String.format("A%03d", i), "Advertiser", "contact@a.com", content, "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        }
+        for (Advertisement ad : staff.advertisements) {
+            executor.addCommand(new ReviewAdvertisementCommand(staff, ad));
+        }
+        for (int i = 0; i < 300; i += 2) {
+            executor.addCommand(new ConfirmPaymentCommand(paymentProcessor, staff.advertisements.get(i)));
+        }
+        for (Advertisement ad : staff.advertisements) {
+            executor.addCommand(new ApproveAdvertisementCommand(staff, ad));
+        }
+        for (Advertisement ad : staff.advertisements) {
+            executor.addCommand(new ForwardAdvertisementCommand(processingCenter, ad));
+        }
+        executor.executeCommands();
+        for (int i = 0; i < 300; i++) {
+            String expected = i % 3 == 0 ? "Rejected" : i % 2 == 0 ? "Processed" : "Not Paid";
+            assertEquals(expected, staff.advertisements.get(i).getReviewStatus());
+        }
+
+        // Edge case: only runs at the threshold are merged, in queue order
+        List<Integer> executedBatchSizes = new ArrayList<>();
+        executor.setCoalescingThreshold(3);
+        for (int i = 0; i < 5; i++) {
+            executor.addCommand(new RecordingCommand(executedBatchSizes, 1));
+        }
+        executor.addCommand(new ReviewAdvertisementCommand(staff, staff.advertisements.get(0)));
+        executor.addCommand(new RecordingCommand(executedBatchSizes, 1));
+        executor.addCommand(new RecordingCommand(executedBatchSizes, 1));
+        executor.executeCommands();
+        assertEquals(List.of(5, 1, 1), executedBatchSizes);
+
+        // Negative case: an advertisement that fails inside a batch skips only its own later commands
+        List<Advertisement> batched = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String id = String.format("B%03d", i);
+            batched.add(i != 50 ? new Advertisement(id, "Advertiser", "contact@a.com", "Valid ad", "Front Page", LocalDate.of(2025, 1, 15), "Large")
+                    : new Advertisement(id, "Advertiser", "contact@a.com", "Valid ad", "Front Page", LocalDate.of(2025, 1, 15), "Large") {
+                        @Override
+                        public boolean markPaid() {
+                            throw new IllegalStateException("Payment gateway unavailable.");
+                        }
+                    });
+        }
+        for (Advertisement ad : batched) {
+            executor.addCommand(new ReviewAdvertisementCommand(staff, ad));
+        }
+        for (Advertisement ad : batched) {
+            executor.addCommand(new ConfirmPaymentCommand(paymentProcessor, ad));
+        }
+        for (Advertisement ad : batched) {
+            executor.addCommand(new ApproveAdvertisementCommand(staff, ad));
+        }
+        for (Advertisement ad : batched) {
+            executor.addCommand(new ForwardAdvertisementCommand(processingCenter, ad));
+        }
+        assertThrows(IllegalStateException.class, executor::executeCommands);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i == 50 ? "Approved" : "Processed", batched.get(i).getReviewStatus());
+        }
+
+        // Edge case: a batch that carries one advertisement many times still runs
+        try (CommandExecutor singleWorker = new CommandExecutor(1)) {
+            for (int i = 0; i < 64; i++) {
+                singleWorker.addCommand(new ConfirmPaymentCommand(paymentProcessor, batched.get(0)));
+            }
+            assertTimeoutPreemptively(Duration.ofSeconds(10), singleWorker::executeCommands);
+            assertTrue(singleWorker.getCommandQueue().isEmpty());
+        }
+
+        // Negative case: thresholds below two are rejected
+        assertThrows(IllegalArgumentException.class, () -> executor.setCoalescingThreshold(1));
+    }
+
+    @Test
+    public void testCommandJournal_Replay() throws IOException {
+        // Positive case: replaying the journal rebuilds the workflow state
+        Path journalFile = Files.createTempFile("commands", ".journal");
+        CommandJournal journal = CommandJournal.open(journalFile);
+        executor.setJournal(journal);
+        executor.addCommand(new CaptureAdvertisementCommand(staff, "Advertiser A", "contact@a.com", "Valid ad", "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        executor.addCommand(new CaptureAdvertisementCommand(staff, "Advertiser B", "contact@b.com", "inappropriate ad", "Back Page", LocalDate.of(2025, 2, 10), "Medium"));
+        executor.executeCommands();
+        for (Advertisement ad : staff.advertisements) {
+            executor.addCommand(new ReviewAdvertisementCommand(staff, ad));
+        }
+        executor.addCommand(new ConfirmPaymentCommand(paymentProcessor, staff.advertisements.get(0)));
+        executor.addCommand(new BatchApproveCommand(staff, staff.advertisements));
+        executor.executeCommands();
+        executor.addCommand(new ReviewAdvertisementCommand(staff, null));
+        executor.addCommand(new ForwardAdvertisementCommand(processingCenter, staff.advertisements.get(0)));
+        assertThrows(NullPointerException.class, executor::executeCommands);
+        assertFalse(staff.advertisements.get(0).isProcessed());
+        journal.close();
+
+        MarketingStaff recoveredStaff = new MarketingStaff("M001", "John Doe");
+        CommandJournal reopened = CommandJournal.open(journalFile);
+        assertEquals(8, reopened.replay(recoveredStaff, new PaymentProcessor(), new ProcessingCenter(), new ArchiveManager()));
+        assertEquals(2, recoveredStaff.advertisements.size());
+        assertEquals("Approved", recoveredStaff.findAdvertisement("A001").getReviewStatus());
+        assertTrue(recoveredStaff.findAdvertisement("A001").isPaid());
+        assertFalse(recoveredStaff.findAdvertisement("A001").isProcessed()); // Skipped after the failed review, as before
+        assertEquals("Rejected", recoveredStaff.findAdvertisement("A002").getReviewStatus());
+
+        // Edge case: a torn record at the end is dropped, and truncation empties the journal
+        long validSize = reopened.size();
+        reopened.close();
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2}));
+        }
+        CommandJournal torn = CommandJournal.open(journalFile);
+        assertEquals(8, torn.replay(new MarketingStaff("M001", "John Doe"), new PaymentProcessor(), new ProcessingCenter(), new ArchiveManager()));
+        assertEquals(validSize, torn.size());
+
+        // Negative case: a corrupt record with valid records after it stops the replay and keeps the file
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), 8);
+        }
+        assertThrows(IOException.class, () -> torn.replay(new MarketingStaff("M001", "John Doe"), new PaymentProcessor(), new ProcessingCenter(), new ArchiveManager()));
+        assertEquals(validSize, torn.size());
+        torn.truncate();
+        assertEquals(0, torn.size());
+
+        // Edge case: an archive replays with the date it was logged with, not the day of recovery
+        MarketingStaff archivingStaff = new MarketingStaff("M002", "Jane Doe");
+        executor.setJournal(torn);
+        executor.addCommand(new CaptureAdvertisementCommand(archivingStaff, "Advertiser A", "contact@a.com", "Valid ad", "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+        executor.addCommand(new CaptureAdvertisementCommand(archivingStaff, "Advertiser B", "contact@b.com", "Valid ad", "Back Page", LocalDate.of(2025, 2, 10), "Medium"));
+        executor.executeCommands();
+        executor.addCommand(new ArchiveAdvertisementCommand(archiveManager, archivingStaff.advertisements, LocalDate.of(2025, 8, 1)));
+        executor.executeCommands();
+        MarketingStaff recoveredArchivingStaff = new MarketingStaff("M002", "Jane Doe");
+        try (ArchiveManager recoveredArchive = new ArchiveManager()) {
+            assertEquals(3, torn.replay(recoveredArchivingStaff, new PaymentProcessor(), new ProcessingCenter(), recoveredArchive));
+            assertTrue(recoveredArchive.getArchiveStore().contains("A001"));
+            assertFalse(recoveredArchive.getArchiveStore().contains("A002"));
+        }
+        assertEquals(1, recoveredArchivingStaff.advertisements.size());
+        assertEquals("A002", recoveredArchivingStaff.advertisements.get(0).getAdvertID());
+
+        // Negative case: commands the journal cannot encode are rejected before anything runs
+        executor.setJournal(torn);
+        executor.addCommand(new RecordingCommand(new ArrayList<>(), 1));
+        assertThrows(IllegalArgumentException.class, executor::executeCommands);
+        assertEquals(1, executor.getCommandQueue().size());
+        torn.close();
+    }
+
+    @Test
+    public void testCommandMetrics() {
+        // Positive case: the executor records each command class separately
+        CommandMetrics.reset();
+        Advertisement ad = new Advertisement("A001", "Advertiser A", "contact@a.com", "Valid ad", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+        staff.advertisements.add(ad);
+        executor.addCommand(new ReviewAdvertisementCommand(staff, ad));
+        executor.addCommand(new ConfirmPaymentCommand(paymentProcessor, ad));
+        executor.addCommand(new ApproveAdvertisementCommand(staff, ad));
+        executor.executeCommands();
+        assertEquals(1, CommandMetrics.get(ReviewAdvertisementCommand.class).getAdvertisementCount());
+        assertEquals(1, CommandMetrics.snapshot().get("ApproveAdvertisementCommand").getCallCount());
+
+        // Edge case: batches count every advertisement they carry
+        for (int i = 2; i <= 100; i++) {
+            Advertisement batched = new Advertisement(String.format("A%03d", i), "Advertiser A", "contact@a.com", "Valid ad", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+            staff.advertisements.add(batched);
+            executor.addCommand(new ReviewAdvertisementCommand(staff, batched));
+        }
+        executor.executeCommands();
+        assertEquals(99, CommandMetrics.get(BatchReviewCommand.class).getAdvertisementCount());
+
+        // Negative case: failed commands are not recorded
+        executor.addCommand(new ReviewAdvertisementCommand(staff, null));
+        assertThrows(NullPointerException.class, executor::executeCommands);
+        assertEquals(1, CommandMetrics.get(ReviewAdvertisementCommand.class).getAdvertisementCount());
+    }
+
+    // Batchable command that records how many commands it stands for when executed
+    private static class RecordingCommand implements BatchableCommand {
+        private final List<Integer> executedBatchSizes;
+        private final int batchSize;
+
+        RecordingCommand(List<Integer> executedBatchSizes, int batchSize) {
+            this.executedBatchSizes = executedBatchSizes;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void execute() {
+            executedBatchSizes.add(batchSize);
+        }
+
+        @Override
+        public Object getBatchKey() {
+            return executedBatchSizes;
+        }
+
+        @Override
+        public Command toBatch(List<Advertisement> advertisements) {
+            return new RecordingCommand(executedBatchSizes, advertisements.size());
+        }
+    }
 }
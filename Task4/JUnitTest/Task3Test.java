@@ -39,6 +39,35 @@ public class Task3Test {
        assertEquals(1, staff.advertisements.size());
    }
 
+   @Test
+   public void testCaptureAdvertisement_ConcurrentUniqueIDs() throws InterruptedException {
+       Thread[] workers = new Thread[4];
+       for (int t = 0; t < workers.length; t++) {
+           workers[t] = new Thread(() -> {
+               for (int i = 0; i < 100; i++) {
+                   staff.captureAdvertisementDetails("Advertiser A", "contact@a.com", "Valid ad content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
+               }
+           });
+           workers[t].start();
+       }
+       for (Thread worker : workers) {
+           worker.join();
+       }
+       assertEquals(400, staff.advertisements.size());
+       for (Advertisement ad : staff.advertisements) {
+           assertSame(ad, staff.findAdvertisement(ad.getAdvertID()));
+       }
+   }
+
+   @Test
+   public void testAdvertisementID_Format() {
+       assertEquals("A001", Advertisement.formatAdvertID(1));
+       assertEquals("A1000", Advertisement.formatAdvertID(1000));
+       assertEquals(1000, Advertisement.parseAdvertNumber("A1000"));
+       assertEquals(-1, Advertisement.parseAdvertNumber("A1"));
+       assertEquals(-1, Advertisement.parseAdvertNumber("X001"));
+   }
+
    @Test
    public void testReviewAdvertisementSuitability_PositiveCase() {
        Advertisement ad = new Advertisement("A001", "Advertiser A", "contact@a.com", "Valid content", "Front Page", LocalDate.of(2025, 1, 15), "Large");
@@ -105,4 +134,29 @@ public class Task3Test {
        assertDoesNotThrow(() -> processingCenter.receiveAdvertisement(ad));
        assertFalse(ad.isProcessed());
    }
+
+   @Test
+   public void testCaptureAll_ValidationResults() {
+       List<AdvertisementSubmission> submissions = new ArrayList<>();
+       for (int i = 0; i < 10; i++) {
+           String content = i % 3 == 1 ? "" : "Valid ad content"; // Rows 1, 4 and 7 are missing content
+           submissions.add(new AdvertisementSubmission("Advertiser A", "contact@a.com", content, "Front Page", LocalDate.of(2025, 1, 15), "Large"));
+       }
+       submissions.add(new AdvertisementSubmission(null, "contact@b.com", "Valid ad content", "Back Page", LocalDate.of(2025, 2, 10), "Medium"));
+
+       // Positive case: valid rows are captured with consecutive IDs, invalid rows are reported without throwing
+       CaptureResult result = staff.captureAll(submissions);
+       assertEquals(7, result.getCapturedCount());
+       assertEquals(4, result.getFailureCount());
+       assertEquals(1, result.getFailedRow(0));
+       assertEquals(CaptureError.MISSING_CONTENT, result.getError(0));
+       assertEquals(10, result.getFailedRow(3));
+       assertEquals(CaptureError.MISSING_ADVERTISER_NAME, result.getError(3));
+       assertEquals(7, staff.advertisements.size());
+       assertNotNull(staff.findAdvertisement("A007"));
+       assertNull(staff.findAdvertisement("A008"));
+
+       // Negative case: failure indexes past the end
+       assertThrows(IndexOutOfBoundsException.class, () -> result.getFailedRow(4));
+   }
 }